@@ -0,0 +1,257 @@
+package com.example.demo.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size and time bounded in-memory cache.
+ * <p>
+ * Entries are spread over a fixed number of segments, each one an access-ordered
+ * {@link LinkedHashMap} guarded by its own monitor, so lookups of different keys
+ * rarely contend. Every entry carries its own expiry time: expired entries are
+ * dropped when read, and the least recently used entry of a segment is evicted
+ * once the segment is full.
+ */
+public class BoundedCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+
+	private final long defaultTtlMillis;
+
+	private final int maximumSize;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public BoundedCache(int maximumSize, long defaultTtlMillis) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		if (defaultTtlMillis <= 0) {
+			throw new IllegalArgumentException("defaultTtlMillis must be positive");
+		}
+		int segmentCount = maximumSize < MAX_SEGMENTS * 4 ? 1 : MAX_SEGMENTS;
+		int segmentCapacity = (maximumSize + segmentCount - 1) / segmentCount;
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<>(segmentCapacity, evictions);
+		}
+		this.maximumSize = maximumSize;
+		this.defaultTtlMillis = defaultTtlMillis;
+	}
+
+	public V get(K key) {
+		V value = segmentFor(key).getLive(key, System.currentTimeMillis());
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the cached value, loading and caching it on a miss. The loader runs
+	 * outside the segment lock; a {@code null} result is returned but not cached.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		return value;
+	}
+
+	public void put(K key, V value) {
+		put(key, value, System.currentTimeMillis() + defaultTtlMillis);
+	}
+
+	public void put(K key, V value, long expiresAtMillis) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, new CacheEntry<>(value, expiresAtMillis));
+		}
+	}
+
+	/**
+	 * Caches the value unless a live entry exists, atomically.
+	 *
+	 * @return the existing value, or {@code null} if {@code value} was stored
+	 */
+	public V putIfAbsent(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			V existing = segment.getLive(key, System.currentTimeMillis());
+			if (existing != null) {
+				hits.increment();
+				return existing;
+			}
+			misses.increment();
+			segment.put(key, new CacheEntry<>(value, System.currentTimeMillis() + defaultTtlMillis));
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the entry only while it still maps to {@code value}.
+	 */
+	public boolean remove(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			CacheEntry<V> entry = segment.get(key);
+			if (entry == null || entry.value != value) {
+				return false;
+			}
+			segment.remove(key);
+			return true;
+		}
+	}
+
+	/**
+	 * Atomically removes the entry and returns its value, or {@code null} when the key
+	 * is absent or expired. At most one concurrent caller gets the value.
+	 */
+	public V remove(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			CacheEntry<V> entry = segment.remove(key);
+			return entry == null || entry.expiresAtMillis <= System.currentTimeMillis() ? null : entry.value;
+		}
+	}
+
+	public void invalidate(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Drops every expired entry. Reads already skip expired entries, this only
+	 * releases their memory early.
+	 */
+	public void cleanUp() {
+		long now = System.currentTimeMillis();
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				Iterator<CacheEntry<V>> it = segment.values().iterator();
+				while (it.hasNext()) {
+					if (it.next().expiresAtMillis <= now) {
+						it.remove();
+						evictions.increment();
+					}
+				}
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0d : (double) hitCount / total;
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		if (segments.length == 1) {
+			return segments[0];
+		}
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	private static final class CacheEntry<V> {
+
+		private final V value;
+
+		private final long expiresAtMillis;
+
+		private CacheEntry(V value, long expiresAtMillis) {
+			this.value = value;
+			this.expiresAtMillis = expiresAtMillis;
+		}
+	}
+
+	private static final class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		private final transient LongAdder evictions;
+
+		private Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		private synchronized V getLive(Object key, long now) {
+			CacheEntry<V> entry = get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expiresAtMillis <= now) {
+				remove(key);
+				evictions.increment();
+				return null;
+			}
+			return entry.value;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+}
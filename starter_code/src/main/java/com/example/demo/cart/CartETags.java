@@ -0,0 +1,31 @@
+package com.example.demo.cart;
+
+/**
+ * Strong entity tags for carts, derived from the cart's version.
+ */
+public final class CartETags {
+
+	private CartETags() {
+	}
+
+	public static String of(long version) {
+		return "\"" + version + "\"";
+	}
+
+	/**
+	 * Evaluates an {@code If-Match} header value against the current tag. Weak tags are
+	 * compared by their opaque part and {@code *} matches any existing cart.
+	 */
+	public static boolean matches(String ifMatch, String eTag) {
+		for (String candidate : ifMatch.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,34 @@
+package com.example.demo.cart;
+
+import com.example.demo.model.responses.CartResponse;
+
+/**
+ * Outcome of {@link WriteBehindCartStore#modify}: the cart as it is after the change,
+ * or as it was when the {@code If-Match} precondition failed.
+ */
+public class CartUpdate {
+
+	private final CartResponse cart;
+
+	private final String eTag;
+
+	private final boolean preconditionFailed;
+
+	CartUpdate(CartResponse cart, String eTag, boolean preconditionFailed) {
+		this.cart = cart;
+		this.eTag = eTag;
+		this.preconditionFailed = preconditionFailed;
+	}
+
+	public CartResponse getCart() {
+		return cart;
+	}
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public boolean isPreconditionFailed() {
+		return preconditionFailed;
+	}
+}
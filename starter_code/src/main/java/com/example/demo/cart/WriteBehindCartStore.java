@@ -0,0 +1,380 @@
+package com.example.demo.cart;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Optional write-behind home for carts ({@code cart.write-behind.enabled}). Carts are
+ * loaded once, kept detached in memory and changed there; dirty carts are written to
+ * {@code cart} and {@code cart_line} in JDBC batches every flush interval, or as soon
+ * as the dirty count reaches the threshold. Several changes to one cart between two
+ * flushes cost a single write.
+ *
+ * <p>Carts are spread over shards by id, and each shard's monitor guards its carts, so
+ * changes to one cart are applied one at a time and never conflict. Anything that reads
+ * a cart through JPA must {@link #flush(long)} it first.
+ */
+@Component
+@Log4j
+public class WriteBehindCartStore implements StatsSource {
+
+	private static final int SHARDS = 64;
+
+	private final Shard[] shards = new Shard[SHARDS];
+
+	// serializes flushes so rows reach the database in the order they were snapshotted
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final AtomicBoolean thresholdFlushQueued = new AtomicBoolean();
+
+	private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "cart-write-behind");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final boolean enabled;
+
+	private final int dirtyThreshold;
+
+	private final long idleNanos;
+
+	private final CartRepository cartRepository;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final AtomicLong dirtyCount = new AtomicLong();
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder modifications = new LongAdder();
+
+	private final LongAdder flushes = new LongAdder();
+
+	private final LongAdder cartsFlushed = new LongAdder();
+
+	private final LongAdder flushFailures = new LongAdder();
+
+	private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+	private final LongAccumulator maxFlushLagMillis = new LongAccumulator(Math::max, 0);
+
+	private volatile long lastBatchSize;
+
+	private volatile long lastFlushLagMillis;
+
+	public WriteBehindCartStore(CartRepository cartRepository, JdbcTemplate jdbcTemplate,
+			PlatformTransactionManager transactionManager,
+			@Value("${cart.write-behind.enabled:false}") boolean enabled,
+			@Value("${cart.write-behind.dirty-threshold:500}") int dirtyThreshold,
+			@Value("${cart.write-behind.idle-ms:600000}") long idleMillis) {
+		this.cartRepository = cartRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.enabled = enabled;
+		this.dirtyThreshold = dirtyThreshold;
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = new Shard();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Applies {@code modification} to the in-memory cart, loading it on first use.
+	 *
+	 * @param ifMatch optional {@code If-Match} value checked against the cart's current tag
+	 * @return the outcome, or {@code null} when no cart has this id
+	 */
+	public CartUpdate modify(long cartId, String ifMatch, Consumer<Cart> modification) {
+		Shard shard = shardFor(cartId);
+		boolean becameDirty;
+		CartUpdate update;
+		while (true) {
+			// look the cart up under the same lock as the change, so an idle eviction in
+			// flushAll() can never leave the change on a state that is no longer resident
+			synchronized (shard) {
+				CartState state = shard.carts.get(cartId);
+				if (state != null) {
+					String eTag = CartETags.of(state.version);
+					if (ifMatch != null && !CartETags.matches(ifMatch, eTag)) {
+						return new CartUpdate(CartResponse.from(state.cart), eTag, true);
+					}
+					modification.accept(state.cart);
+					state.version++;
+					state.lastAccessNanos = System.nanoTime();
+					becameDirty = shard.dirty.add(cartId);
+					if (becameDirty) {
+						state.dirtySinceNanos = state.lastAccessNanos;
+					}
+					update = new CartUpdate(CartResponse.from(state.cart), CartETags.of(state.version), false);
+					break;
+				}
+			}
+			CartState loaded = load(cartId);
+			if (loaded == null) {
+				return null;
+			}
+			shard.putIfAbsent(cartId, loaded);
+		}
+		modifications.increment();
+		if (becameDirty && dirtyCount.incrementAndGet() >= dirtyThreshold
+				&& thresholdFlushQueued.compareAndSet(false, true)) {
+			flusher.execute(() -> {
+				thresholdFlushQueued.set(false);
+				flushAll();
+			});
+		}
+		return update;
+	}
+
+	/**
+	 * Writes the cart through if it has unflushed changes. Call before reading it via JPA.
+	 */
+	public void flush(long cartId) {
+		if (!enabled) {
+			return;
+		}
+		flushLock.lock();
+		try {
+			Shard shard = shardFor(cartId);
+			List<CartRow> rows = new ArrayList<>(1);
+			synchronized (shard) {
+				CartState state = shard.carts.get(cartId);
+				if (state != null && shard.dirty.remove(cartId)) {
+					rows.add(new CartRow(cartId, state));
+				}
+			}
+			write(rows);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes all dirty carts in one batch and drops carts that have been clean and idle
+	 * for longer than {@code cart.write-behind.idle-ms}.
+	 */
+	@Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+	public void flushAll() {
+		if (!enabled) {
+			return;
+		}
+		flushLock.lock();
+		try {
+			List<CartRow> rows = new ArrayList<>();
+			long idleBefore = System.nanoTime() - idleNanos;
+			for (Shard shard : shards) {
+				synchronized (shard) {
+					shard.carts.values().removeIf(state -> state.lastAccessNanos - idleBefore < 0
+							&& !shard.dirty.contains(state.cart.getId()));
+					for (Long cartId : shard.dirty) {
+						CartState state = shard.carts.get(cartId);
+						if (state != null) {
+							rows.add(new CartRow(cartId, state));
+						} else {
+							// nothing left to write for it; keep the count honest
+							dirtyCount.decrementAndGet();
+						}
+					}
+					shard.dirty.clear();
+				}
+			}
+			write(rows);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flusher.shutdown();
+		flushAll();
+	}
+
+	private void write(List<CartRow> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		dirtyCount.addAndGet(-rows.size());
+		long now = System.nanoTime();
+		long lagMillis = 0;
+		List<Object[]> cartArgs = new ArrayList<>(rows.size());
+		List<Object[]> deleteArgs = new ArrayList<>(rows.size());
+		List<Object[]> lineArgs = new ArrayList<>();
+		for (CartRow row : rows) {
+			lagMillis = Math.max(lagMillis, TimeUnit.NANOSECONDS.toMillis(now - row.dirtySinceNanos));
+			cartArgs.add(new Object[] {row.total, row.version, row.cartId});
+			deleteArgs.add(new Object[] {row.cartId});
+			lineArgs.addAll(row.lines);
+		}
+		try {
+			transactionTemplate.execute(status -> {
+				jdbcTemplate.batchUpdate("update cart set total = ?, version = ? where id = ?", cartArgs);
+				jdbcTemplate.batchUpdate("delete from cart_line where cart_id = ?", deleteArgs);
+				jdbcTemplate.batchUpdate(
+						"insert into cart_line (cart_id, item_id, quantity, unit_price) values (?, ?, ?, ?)", lineArgs);
+				return null;
+			});
+		} catch (RuntimeException e) {
+			flushFailures.increment();
+			log.error("Cart flush of " + rows.size() + " carts failed, will retry", e);
+			for (CartRow row : rows) {
+				markDirty(row.cartId);
+			}
+			return;
+		}
+		flushes.increment();
+		cartsFlushed.add(rows.size());
+		lastBatchSize = rows.size();
+		maxBatchSize.accumulate(rows.size());
+		lastFlushLagMillis = lagMillis;
+		maxFlushLagMillis.accumulate(lagMillis);
+	}
+
+	private void markDirty(long cartId) {
+		Shard shard = shardFor(cartId);
+		synchronized (shard) {
+			if (shard.carts.containsKey(cartId) && shard.dirty.add(cartId)) {
+				dirtyCount.incrementAndGet();
+			}
+		}
+	}
+
+	private CartState load(long cartId) {
+		Cart cart = cartRepository.findById(cartId).orElse(null);
+		if (cart == null) {
+			return null;
+		}
+		// initialize the lines, then let go of the request's persistence context
+		cart.getLines().size();
+		entityManager.detach(cart);
+		loads.increment();
+		return new CartState(cart);
+	}
+
+	private Shard shardFor(long cartId) {
+		return shards[(int) (cartId & (SHARDS - 1))];
+	}
+
+	@Override
+	public String getStatsName() {
+		return "cartWriteBehind";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		int resident = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				resident += shard.carts.size();
+			}
+		}
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled ? 1 : 0);
+		stats.put("residentCarts", resident);
+		stats.put("dirtyCarts", dirtyCount.get());
+		stats.put("loads", loads.sum());
+		stats.put("modifications", modifications.sum());
+		stats.put("flushes", flushes.sum());
+		stats.put("cartsFlushed", cartsFlushed.sum());
+		stats.put("flushFailures", flushFailures.sum());
+		stats.put("lastBatchSize", lastBatchSize);
+		stats.put("maxBatchSize", maxBatchSize.get());
+		stats.put("lastFlushLagMs", lastFlushLagMillis);
+		stats.put("maxFlushLagMs", maxFlushLagMillis.get());
+		return stats;
+	}
+
+	private static final class Shard {
+
+		private final Map<Long, CartState> carts = new HashMap<>();
+
+		private final Set<Long> dirty = new LinkedHashSet<>();
+
+		synchronized void putIfAbsent(long cartId, CartState loaded) {
+			carts.putIfAbsent(cartId, loaded);
+		}
+	}
+
+	private static final class CartState {
+
+		private final Cart cart;
+
+		private long version;
+
+		private long lastAccessNanos = System.nanoTime();
+
+		private long dirtySinceNanos;
+
+		CartState(Cart cart) {
+			this.cart = cart;
+			this.version = cart.getVersion();
+		}
+	}
+
+	/**
+	 * Values of one dirty cart, copied under its shard lock.
+	 */
+	private static final class CartRow {
+
+		private final long cartId;
+
+		private final BigDecimal total;
+
+		private final long version;
+
+		private final long dirtySinceNanos;
+
+		private final List<Object[]> lines = new ArrayList<>();
+
+		CartRow(long cartId, CartState state) {
+			this.cartId = cartId;
+			this.total = state.cart.getTotal();
+			this.version = state.version;
+			this.dirtySinceNanos = state.dirtySinceNanos;
+			for (CartLine line : state.cart.getLines()) {
+				lines.add(new Object[] {cartId, line.getItemId(), line.getQuantity(), line.getUnitPrice()});
+			}
+		}
+	}
+}
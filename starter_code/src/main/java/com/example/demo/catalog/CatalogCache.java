@@ -0,0 +1,157 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.stats.StatsSource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-through cache of the item catalog: items by id, items by name and listing pages,
+ * the latter serialized to JSON and gzip once per catalog version.
+ * Entries are loaded on first use and tagged with the {@link CatalogVersion} read before
+ * loading, so any item write makes every older entry a miss. Lookups of unknown ids and
+ * names are cached too.
+ * <p>
+ * Cached items are shared between requests and must not be modified.
+ */
+@Component
+public class CatalogCache implements StatsSource {
+
+	private final ItemRepository itemRepository;
+
+	private final CatalogVersion catalogVersion;
+
+	private final BoundedCache<Long, Versioned<Item>> byId;
+
+	private final BoundedCache<String, Versioned<List<Item>>> byName;
+
+	private final BoundedCache<String, Versioned<EncodedPage>> pages;
+
+	private final ObjectWriter writer;
+
+	private final LongAdder stale = new LongAdder();
+
+	public CatalogCache(ItemRepository itemRepository, CatalogVersion catalogVersion, ObjectMapper objectMapper,
+			@Value("${catalog.cache.maximum-size:10000}") int maximumSize,
+			@Value("${catalog.cache.maximum-pages:1000}") int maximumPages,
+			@Value("${catalog.cache.ttl-ms:600000}") long ttlMillis) {
+		this.itemRepository = itemRepository;
+		this.catalogVersion = catalogVersion;
+		this.byId = new BoundedCache<>(maximumSize, ttlMillis);
+		this.byName = new BoundedCache<>(maximumSize, ttlMillis);
+		this.pages = new BoundedCache<>(maximumPages, ttlMillis);
+		this.writer = objectMapper.writerFor(new TypeReference<List<Item>>() {});
+	}
+
+	public Optional<Item> findById(Long id) {
+		Versioned<Item> cached = live(byId.get(id));
+		if (cached == null) {
+			long version = catalogVersion.current();
+			cached = new Versioned<>(version, itemRepository.findById(id).orElse(null));
+			byId.put(id, cached);
+		}
+		return Optional.ofNullable(cached.value);
+	}
+
+	public List<Item> findByName(String name) {
+		Versioned<List<Item>> cached = live(byName.get(name));
+		if (cached == null) {
+			long version = catalogVersion.current();
+			List<Item> items = itemRepository.findByName(name);
+			cached = new Versioned<>(version,
+					items == null ? Collections.<Item>emptyList() : Collections.unmodifiableList(items));
+			byName.put(name, cached);
+		}
+		return cached.value;
+	}
+
+	/**
+	 * One page of the sorted listing, already serialized.
+	 */
+	public EncodedPage findPage(CatalogQuery query) {
+		String key = query.key();
+		Versioned<EncodedPage> cached = live(pages.get(key));
+		if (cached == null) {
+			long version = catalogVersion.current();
+			cached = new Versioned<>(version, encode(query, query.load(itemRepository)));
+			pages.put(key, cached);
+		}
+		return cached.value;
+	}
+
+	private EncodedPage encode(CatalogQuery query, List<Item> loaded) {
+		int pageSize = query.getPageSize();
+		List<Item> page = loaded.size() > pageSize ? loaded.subList(0, pageSize) : loaded;
+		String nextCursor = query.hasMore(loaded) ? query.cursorAfter(page.get(pageSize - 1)) : null;
+		try {
+			byte[] json = writer.writeValueAsBytes(page);
+			ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 4 + 64);
+			try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+				out.write(json);
+			}
+			return new EncodedPage(json, gzip.toByteArray(), nextCursor);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not encode catalog page", e);
+		}
+	}
+
+	private <T> Versioned<T> live(Versioned<T> entry) {
+		if (entry == null) {
+			return null;
+		}
+		if (entry.version != catalogVersion.current()) {
+			stale.increment();
+			return null;
+		}
+		return entry;
+	}
+
+	@Override
+	public String getStatsName() {
+		return "catalogCache";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("version", catalogVersion.current());
+		stats.put("byIdSize", byId.size());
+		stats.put("byNameSize", byName.size());
+		stats.put("pagesSize", pages.size());
+		stats.put("hits", byId.getHitCount() + byName.getHitCount() + pages.getHitCount()
+				- stale.sum());
+		stats.put("misses", byId.getMissCount() + byName.getMissCount() + pages.getMissCount()
+				+ stale.sum());
+		stats.put("stale", stale.sum());
+		stats.put("evictions", byId.getEvictionCount() + byName.getEvictionCount() + pages.getEvictionCount());
+		return stats;
+	}
+
+	private static final class Versioned<T> {
+
+		private final long version;
+
+		private final T value;
+
+		private Versioned(long version, T value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+}
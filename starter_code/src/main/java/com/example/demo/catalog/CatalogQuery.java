@@ -0,0 +1,145 @@
+package com.example.demo.catalog;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+/**
+ * One page of the catalog listing: a sort column and direction, plus either a page number
+ * or the cursor of the previous page's last item.
+ * <p>
+ * Cursors are opaque to clients: the last item's id and sort value, Base64url encoded.
+ */
+public final class CatalogQuery {
+
+	public enum SortBy {
+		ID, NAME, PRICE;
+
+		public static SortBy fromString(String value) {
+			return valueOf(value.toUpperCase(Locale.ROOT));
+		}
+	}
+
+	private final SortBy sortBy;
+
+	private final Sort.Direction direction;
+
+	private final Integer page;
+
+	private final Long afterId;
+
+	private final String afterValue;
+
+	private final int pageSize;
+
+	private CatalogQuery(SortBy sortBy, Sort.Direction direction, Integer page, Long afterId, String afterValue,
+			int pageSize) {
+		this.sortBy = sortBy;
+		this.direction = direction;
+		this.page = page;
+		this.afterId = afterId;
+		this.afterValue = afterValue;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @param page zero-based page number, or {@code null} to start at the cursor
+	 * @param cursor cursor returned with the previous page, or {@code null} for the first page
+	 * @param pageSize items per page
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public static CatalogQuery of(SortBy sortBy, Sort.Direction direction, Integer page, String cursor,
+			int pageSize) {
+		if (cursor == null) {
+			return new CatalogQuery(sortBy, direction, page, null, null, pageSize);
+		}
+		String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		int separator = decoded.indexOf(':');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Malformed cursor");
+		}
+		Long afterId = Long.valueOf(decoded.substring(0, separator));
+		String afterValue = decoded.substring(separator + 1);
+		if (sortBy == SortBy.PRICE) {
+			// parsed up front so a bad cursor is rejected before it reaches the repository
+			new BigDecimal(afterValue);
+		}
+		return new CatalogQuery(sortBy, direction, page, afterId, afterValue, pageSize);
+	}
+
+	/**
+	 * Cursor that continues this listing after {@code last}.
+	 */
+	public String cursorAfter(Item last) {
+		String value;
+		switch (sortBy) {
+		case NAME:
+			value = last.getName();
+			break;
+		case PRICE:
+			value = last.getPrice().toPlainString();
+			break;
+		default:
+			value = "";
+		}
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((last.getId() + ":" + value).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Whether another page follows one loaded by {@link #load}. Keyset pages read one
+	 * extra row to tell; with a page number a full page is assumed to have a successor.
+	 */
+	boolean hasMore(List<Item> loaded) {
+		return page == null ? loaded.size() > pageSize : loaded.size() == pageSize;
+	}
+
+	/**
+	 * Reads the page, plus one extra row for keyset pages.
+	 */
+	List<Item> load(ItemRepository itemRepository) {
+		int limit = page == null ? pageSize + 1 : pageSize;
+		Sort sort = sortBy == SortBy.ID
+				? Sort.by(direction, "id")
+				: Sort.by(direction, sortBy.name().toLowerCase(Locale.ROOT)).and(Sort.by(direction, "id"));
+		if (page != null) {
+			return itemRepository.findAllBy(PageRequest.of(page, limit, sort));
+		}
+		PageRequest first = PageRequest.of(0, limit, sort);
+		if (afterId == null) {
+			return itemRepository.findAllBy(first);
+		}
+		boolean ascending = direction.isAscending();
+		switch (sortBy) {
+		case NAME:
+			return ascending
+					? itemRepository.findAfterName(afterValue, afterId, first)
+					: itemRepository.findBeforeName(afterValue, afterId, first);
+		case PRICE:
+			BigDecimal price = new BigDecimal(afterValue);
+			return ascending
+					? itemRepository.findAfterPrice(price, afterId, first)
+					: itemRepository.findBeforePrice(price, afterId, first);
+		default:
+			return ascending
+					? itemRepository.findByIdGreaterThan(afterId, first)
+					: itemRepository.findByIdLessThan(afterId, first);
+		}
+	}
+
+	String key() {
+		return sortBy + " " + direction + " " + page + " " + afterId + " " + pageSize + " " + afterValue;
+	}
+}
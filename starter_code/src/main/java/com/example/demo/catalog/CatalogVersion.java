@@ -0,0 +1,55 @@
+package com.example.demo.catalog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counter bumped on every item write, through {@link ItemChangeListener}. Anything
+ * derived from the catalog records the version it was built at and is stale once the
+ * counter moves on.
+ * <p>
+ * The counter restarts with the process, so validators handed to clients also carry the
+ * start time: a version seen before a restart never matches one issued after it.
+ */
+@Component
+public class CatalogVersion {
+
+	private final long epoch = System.currentTimeMillis();
+
+	private final AtomicLong version = new AtomicLong();
+
+	// whole seconds, as Last-Modified and If-Modified-Since carry no more
+	private final AtomicLong lastModifiedMillis = new AtomicLong(nextSecond(epoch));
+
+	public long current() {
+		return version.get();
+	}
+
+	public long bump() {
+		// round up, and move at least a second past the last value handed out, so a client
+		// that read earlier within the same second never gets a 304 for the new contents
+		long now = System.currentTimeMillis();
+		lastModifiedMillis.updateAndGet(last -> Math.max(nextSecond(now), last + 1000));
+		return version.incrementAndGet();
+	}
+
+	/**
+	 * Strong entity tag for anything rendered from the current catalog, quotes included.
+	 */
+	public String eTag() {
+		return "\"" + Long.toString(epoch, 36) + "." + version.get() + "\"";
+	}
+
+	/**
+	 * Time of the last item write, or of startup if there was none, rounded up to a whole
+	 * second. Writes within one second still get distinct, increasing values.
+	 */
+	public long lastModifiedMillis() {
+		return lastModifiedMillis.get();
+	}
+
+	private static long nextSecond(long millis) {
+		return (millis + 999) / 1000 * 1000;
+	}
+}
@@ -0,0 +1,35 @@
+package com.example.demo.catalog;
+
+/**
+ * A catalog listing page rendered once per catalog version: its JSON and a gzipped copy,
+ * written to responses as they are. The arrays are shared and must not be modified.
+ */
+public final class EncodedPage {
+
+	private final byte[] json;
+
+	private final byte[] gzip;
+
+	private final String nextCursor;
+
+	EncodedPage(byte[] json, byte[] gzip, String nextCursor) {
+		this.json = json;
+		this.gzip = gzip;
+		this.nextCursor = nextCursor;
+	}
+
+	public byte[] getJson() {
+		return json;
+	}
+
+	public byte[] getGzip() {
+		return gzip;
+	}
+
+	/**
+	 * Cursor of the following page, or {@code null} on the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+}
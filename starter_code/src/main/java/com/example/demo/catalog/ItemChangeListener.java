@@ -0,0 +1,65 @@
+package com.example.demo.catalog;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import com.example.demo.model.persistence.Item;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Entity listener of {@link com.example.demo.model.persistence.Item}. Hibernate creates it
+ * through the Spring bean container, which supplies its collaborators. The search index
+ * is resolved on first write: it depends on the item repository, which cannot exist
+ * before the entity manager factory that asks for this listener.
+ */
+public class ItemChangeListener {
+
+	private final CatalogVersion catalogVersion;
+
+	private final ObjectProvider<ItemSearchIndex> searchIndex;
+
+	public ItemChangeListener(CatalogVersion catalogVersion, ObjectProvider<ItemSearchIndex> searchIndex) {
+		this.catalogVersion = catalogVersion;
+		this.searchIndex = searchIndex;
+	}
+
+	/**
+	 * Bumps at flush and again once the transaction completes: a reader that reloads
+	 * between the two still sees the old rows, and must not keep them past the commit.
+	 */
+	@PostPersist
+	@PostUpdate
+	void onItemSaved(Item item) {
+		onItemWrite(() -> searchIndex.getObject().index(item));
+	}
+
+	@PostRemove
+	void onItemRemoved(Item item) {
+		Long itemId = item.getId();
+		onItemWrite(() -> searchIndex.getObject().remove(itemId));
+	}
+
+	/**
+	 * The search index is only told about committed writes; without a transaction it is
+	 * updated at once.
+	 */
+	private void onItemWrite(Runnable updateIndex) {
+		catalogVersion.bump();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			updateIndex.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				catalogVersion.bump();
+				if (status == STATUS_COMMITTED) {
+					updateIndex.run();
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,578 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over item names and descriptions.
+ * <p>
+ * Text is split into lower-case letter and digit tokens. Every distinct token gets a term
+ * id and a posting list of the documents (items) containing it, kept as a sorted
+ * {@code int[]} of {@code doc << 1 | inName}. A sorted term dictionary answers prefix
+ * queries, and a trigram-to-term index answers infix queries for tokens of three or more
+ * characters.
+ * <p>
+ * A document matches when every query token matches one of its terms; each token scores
+ * by its best term, exact beating prefix beating infix, doubled when the term is in the
+ * name. The index is loaded on first use and then kept current by
+ * {@link ItemChangeListener} after each committed item write.
+ */
+@Component
+@Log4j
+public class ItemSearchIndex implements StatsSource {
+
+	static final int EXACT_WEIGHT = 3;
+
+	static final int PREFIX_WEIGHT = 2;
+
+	static final int INFIX_WEIGHT = 1;
+
+	static final int NAME_BOOST = 2;
+
+	static final int MAX_QUERY_TOKENS = 8;
+
+	// bounds the work done for very short prefixes and common trigrams
+	static final int MAX_TERM_EXPANSIONS = 512;
+
+	private static final int GRAM = 3;
+
+	// rough cost of one binary-search probe relative to scanning one posting
+	private static final int PROBE_COST = 16;
+
+	private final ItemRepository itemRepository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private volatile boolean loaded;
+
+	private final NavigableMap<String, Integer> termIds = new TreeMap<>();
+
+	private final List<String> terms = new ArrayList<>();
+
+	private final List<IntList> postings = new ArrayList<>();
+
+	private final Map<String, IntList> trigrams = new HashMap<>();
+
+	private final Map<Long, Integer> docIds = new HashMap<>();
+
+	private final List<Item> docs = new ArrayList<>();
+
+	private final List<int[]> docTerms = new ArrayList<>();
+
+	private int liveDocs;
+
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	private final LongAdder searches = new LongAdder();
+
+	private final LongAdder searchNanos = new LongAdder();
+
+	private final LongAccumulator maxSearchNanos = new LongAccumulator(Math::max, 0);
+
+	private final LongAdder updates = new LongAdder();
+
+	public ItemSearchIndex(ItemRepository itemRepository) {
+		this.itemRepository = itemRepository;
+	}
+
+	/**
+	 * Best {@code limit} items matching all tokens of {@code query}, best first.
+	 */
+	public List<Item> search(String query, int limit) {
+		ensureLoaded();
+		List<String> tokens = new ArrayList<>(tokenize(query));
+		if (tokens.isEmpty() || limit < 1) {
+			return Collections.emptyList();
+		}
+		if (tokens.size() > MAX_QUERY_TOKENS) {
+			tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+		}
+		long started = System.nanoTime();
+		Scratch s = scratch.get();
+		lock.readLock().lock();
+		try {
+			return rank(tokens, limit, s);
+		} finally {
+			s.reset();
+			lock.readLock().unlock();
+			long elapsed = System.nanoTime() - started;
+			searches.increment();
+			searchNanos.add(elapsed);
+			maxSearchNanos.accumulate(elapsed);
+		}
+	}
+
+	/**
+	 * Adds or replaces the item. Ignored until the index is loaded, since the load reads it.
+	 */
+	public void index(Item item) {
+		lock.writeLock().lock();
+		try {
+			if (loaded) {
+				put(item);
+				updates.increment();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(Long itemId) {
+		lock.writeLock().lock();
+		try {
+			if (loaded) {
+				Integer doc = docIds.remove(itemId);
+				if (doc != null) {
+					unpost(doc);
+					docs.set(doc, null);
+					liveDocs--;
+				}
+				updates.increment();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (!loaded) {
+				long started = System.currentTimeMillis();
+				for (Item item : itemRepository.findAll()) {
+					put(item);
+				}
+				loaded = true;
+				log.info("Indexed " + liveDocs + " items, " + terms.size() + " terms in "
+						+ (System.currentTimeMillis() - started) + " ms");
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private List<Item> rank(List<String> tokens, int limit, Scratch s) {
+		s.ensureCapacity(docs.size());
+		List<TokenMatch> matches = new ArrayList<>(tokens.size());
+		for (String token : tokens) {
+			TokenMatch match = expand(token);
+			if (match.postingCount == 0) {
+				return Collections.emptyList();
+			}
+			matches.add(match);
+		}
+		// the rarest token picks the candidates, the others only filter them
+		matches.sort((a, b) -> Long.compare(a.postingCount, b.postingCount));
+
+		int candidates = 0;
+		for (int q = 0; q < matches.size(); q++) {
+			TokenMatch match = matches.get(q);
+			if (q > 0 && (long) candidates * match.terms.size * PROBE_COST < match.postingCount) {
+				candidates = probe(match, q, s);
+			} else {
+				candidates = scan(match, q, s);
+			}
+			if (candidates == 0) {
+				return Collections.emptyList();
+			}
+		}
+
+		PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, (a, b) -> compare(s, a, b));
+		for (int i = 0; i < s.touched.size; i++) {
+			int doc = s.touched.values[i];
+			if (s.matched[doc] != matches.size()) {
+				continue;
+			}
+			if (top.size() < limit) {
+				top.add(doc);
+			} else if (compare(s, doc, top.peek()) > 0) {
+				top.poll();
+				top.add(doc);
+			}
+		}
+		Item[] results = new Item[top.size()];
+		for (int i = results.length - 1; i >= 0; i--) {
+			results[i] = docs.get(top.poll());
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Walks the posting lists of the token's terms, crediting documents that matched the
+	 * earlier tokens.
+	 *
+	 * @return documents matching tokens {@code 0..q}
+	 */
+	private int scan(TokenMatch match, int q, Scratch s) {
+		for (int t = 0; t < match.terms.size; t++) {
+			IntList list = postings.get(match.terms.values[t]);
+			int weight = match.weights.values[t];
+			for (int p = 0; p < list.size; p++) {
+				int posting = list.values[p];
+				int doc = posting >>> 1;
+				if (s.matched[doc] != q) {
+					continue;
+				}
+				int score = (posting & 1) == 1 ? weight * NAME_BOOST : weight;
+				if (s.tokenScore[doc] == 0) {
+					s.tokenTouched.add(doc);
+				}
+				if (score > s.tokenScore[doc]) {
+					s.tokenScore[doc] = score;
+				}
+			}
+		}
+		int candidates = s.tokenTouched.size;
+		for (int i = 0; i < s.tokenTouched.size; i++) {
+			int doc = s.tokenTouched.values[i];
+			if (q == 0) {
+				s.touched.add(doc);
+			}
+			s.matched[doc]++;
+			s.score[doc] += s.tokenScore[doc];
+			s.tokenScore[doc] = 0;
+		}
+		s.tokenTouched.clear();
+		return candidates;
+	}
+
+	/**
+	 * Looks the remaining candidates up in the token's posting lists by binary search,
+	 * for when there are far fewer candidates than postings.
+	 */
+	private int probe(TokenMatch match, int q, Scratch s) {
+		int candidates = 0;
+		for (int i = 0; i < s.touched.size; i++) {
+			int doc = s.touched.values[i];
+			if (s.matched[doc] != q) {
+				continue;
+			}
+			int best = 0;
+			for (int t = 0; t < match.terms.size; t++) {
+				int posting = postings.get(match.terms.values[t]).findDoc(doc);
+				if (posting >= 0) {
+					int weight = match.weights.values[t];
+					best = Math.max(best, (posting & 1) == 1 ? weight * NAME_BOOST : weight);
+				}
+			}
+			if (best > 0) {
+				s.matched[doc]++;
+				s.score[doc] += best;
+				candidates++;
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Orders worst first: lower score, then indexed later.
+	 */
+	private static int compare(Scratch s, int a, int b) {
+		int byScore = Integer.compare(s.score[a], s.score[b]);
+		return byScore != 0 ? byScore : Integer.compare(b, a);
+	}
+
+	/**
+	 * Collects the terms a query token matches, with the weight of the best way it matches.
+	 */
+	private TokenMatch expand(String token) {
+		TokenMatch match = new TokenMatch();
+		Integer exact = termIds.get(token);
+		if (exact != null) {
+			match.add(exact, EXACT_WEIGHT);
+		}
+		for (Integer termId : termIds.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+			if (match.terms.size >= MAX_TERM_EXPANSIONS) {
+				return match;
+			}
+			match.add(termId, PREFIX_WEIGHT);
+		}
+		if (token.length() < GRAM) {
+			return match;
+		}
+		IntList candidates = null;
+		for (int i = 0; i + GRAM <= token.length(); i++) {
+			IntList gramTerms = trigrams.get(token.substring(i, i + GRAM));
+			if (gramTerms == null) {
+				return match;
+			}
+			candidates = candidates == null ? gramTerms : candidates.intersect(gramTerms);
+		}
+		for (int i = 0; i < candidates.size && match.terms.size < MAX_TERM_EXPANSIONS; i++) {
+			String term = terms.get(candidates.values[i]);
+			// prefix matches were taken above
+			if (!term.startsWith(token) && term.contains(token)) {
+				match.add(candidates.values[i], INFIX_WEIGHT);
+			}
+		}
+		return match;
+	}
+
+	private void put(Item item) {
+		Integer doc = docIds.get(item.getId());
+		if (doc == null) {
+			doc = docs.size();
+			docs.add(null);
+			docTerms.add(null);
+			docIds.put(item.getId(), doc);
+			liveDocs++;
+		} else {
+			unpost(doc);
+		}
+		docs.set(doc, copyOf(item));
+
+		Set<String> nameTokens = tokenize(item.getName());
+		Set<String> allTokens = new LinkedHashSet<>(nameTokens);
+		allTokens.addAll(tokenize(item.getDescription()));
+		int[] termsOfDoc = new int[allTokens.size()];
+		int i = 0;
+		for (String token : allTokens) {
+			int termId = termId(token);
+			postings.get(termId).insertSorted(doc << 1 | (nameTokens.contains(token) ? 1 : 0));
+			termsOfDoc[i++] = termId;
+		}
+		docTerms.set(doc, termsOfDoc);
+	}
+
+	private void unpost(int doc) {
+		for (int termId : docTerms.get(doc)) {
+			postings.get(termId).removeDoc(doc);
+		}
+		docTerms.set(doc, new int[0]);
+	}
+
+	private int termId(String token) {
+		Integer termId = termIds.get(token);
+		if (termId != null) {
+			return termId;
+		}
+		int newTermId = terms.size();
+		termIds.put(token, newTermId);
+		terms.add(token);
+		postings.add(new IntList());
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + GRAM <= token.length(); i++) {
+			grams.add(token.substring(i, i + GRAM));
+		}
+		for (String gram : grams) {
+			// term ids only grow, so appending keeps the lists sorted
+			trigrams.computeIfAbsent(gram, g -> new IntList()).add(newTermId);
+		}
+		return newTermId;
+	}
+
+	/**
+	 * Detached copy, so later changes to a managed entity can't reach the index.
+	 */
+	private static Item copyOf(Item item) {
+		Item copy = new Item();
+		copy.setId(item.getId());
+		copy.setName(item.getName());
+		copy.setPrice(item.getPrice());
+		copy.setDescription(item.getDescription());
+		return copy;
+	}
+
+	static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		if (text == null) {
+			return tokens;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	@Override
+	public String getStatsName() {
+		return "itemSearch";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		long searchCount = searches.sum();
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("loaded", loaded ? 1 : 0);
+		lock.readLock().lock();
+		try {
+			stats.put("items", liveDocs);
+			stats.put("terms", terms.size());
+			stats.put("trigrams", trigrams.size());
+		} finally {
+			lock.readLock().unlock();
+		}
+		stats.put("updates", updates.sum());
+		stats.put("searches", searchCount);
+		stats.put("avgSearchMicros", searchCount == 0 ? 0d : searchNanos.sum() / (double) searchCount / 1000);
+		stats.put("maxSearchMicros", maxSearchNanos.get() / 1000);
+		return stats;
+	}
+
+	/**
+	 * Terms one query token matches, with their weights and total posting count.
+	 */
+	private final class TokenMatch {
+
+		private final IntList terms = new IntList();
+
+		private final IntList weights = new IntList();
+
+		private long postingCount;
+
+		void add(int termId, int weight) {
+			terms.add(termId);
+			weights.add(weight);
+			postingCount += postings.get(termId).size;
+		}
+	}
+
+	/**
+	 * Growable {@code int[]}, used for posting lists and per-query bookkeeping.
+	 */
+	static final class IntList {
+
+		private int[] values = new int[4];
+
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		void insertSorted(int value) {
+			int at = Arrays.binarySearch(values, 0, size, value);
+			if (at >= 0) {
+				return;
+			}
+			at = -at - 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			System.arraycopy(values, at, values, at + 1, size - at);
+			values[at] = value;
+			size++;
+		}
+
+		/**
+		 * Removes the posting of {@code doc}, whatever its name flag.
+		 */
+		void removeDoc(int doc) {
+			int at = Arrays.binarySearch(values, 0, size, doc << 1);
+			if (at < 0) {
+				at = -at - 1;
+			}
+			if (at < size && values[at] >>> 1 == doc) {
+				System.arraycopy(values, at + 1, values, at, size - at - 1);
+				size--;
+			}
+		}
+
+		/**
+		 * The posting of {@code doc}, or -1.
+		 */
+		int findDoc(int doc) {
+			int at = Arrays.binarySearch(values, 0, size, doc << 1);
+			if (at >= 0) {
+				return values[at];
+			}
+			at = -at - 1;
+			return at < size && values[at] >>> 1 == doc ? values[at] : -1;
+		}
+
+		IntList intersect(IntList other) {
+			IntList result = new IntList();
+			int i = 0;
+			int j = 0;
+			while (i < size && j < other.size) {
+				if (values[i] < other.values[j]) {
+					i++;
+				} else if (values[i] > other.values[j]) {
+					j++;
+				} else {
+					result.add(values[i]);
+					i++;
+					j++;
+				}
+			}
+			return result;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	/**
+	 * Per-thread arrays indexed by document, reset after every query by walking only the
+	 * documents it touched.
+	 */
+	private static final class Scratch {
+
+		private int[] score = new int[0];
+
+		private int[] matched = new int[0];
+
+		private int[] tokenScore = new int[0];
+
+		private final IntList touched = new IntList();
+
+		private final IntList tokenTouched = new IntList();
+
+		void ensureCapacity(int docCount) {
+			if (score.length < docCount) {
+				int capacity = Math.max(docCount, score.length * 2);
+				score = new int[capacity];
+				matched = new int[capacity];
+				tokenScore = new int[capacity];
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < touched.size; i++) {
+				int doc = touched.values[i];
+				score[doc] = 0;
+				matched[doc] = 0;
+			}
+			for (int i = 0; i < tokenTouched.size; i++) {
+				tokenScore[tokenTouched.values[i]] = 0;
+			}
+			touched.clear();
+			tokenTouched.clear();
+		}
+	}
+}
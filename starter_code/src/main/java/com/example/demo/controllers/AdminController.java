@@ -0,0 +1,86 @@
+package com.example.demo.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.demo.order.OrderExporter;
+import com.example.demo.order.OrderSummaryService;
+import com.example.demo.security.SecurityConstants;
+import com.example.demo.stats.StatsSource;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+	static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+	@Autowired
+	private List<StatsSource> statsSources;
+
+	@Autowired
+	private OrderSummaryService orderSummaryService;
+
+	@Autowired
+	private OrderExporter orderExporter;
+
+	@Value("${order.export.timeout-ms:600000}")
+	private long exportTimeoutMillis;
+
+	@GetMapping("/stats")
+	public ResponseEntity<Map<String, Map<String, Number>>> getStats() {
+		Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+		for (StatsSource source : statsSources) {
+			stats.put(source.getStatsName(), source.getStats());
+		}
+		return ResponseEntity.ok(stats);
+	}
+
+	/**
+	 * Recomputes the per-user order summaries from the order history. Admin only, as a
+	 * rebuild reads every order.
+	 */
+	@PostMapping("/order-summaries/rebuild")
+	@PreAuthorize("hasRole('" + SecurityConstants.ADMIN_ROLE + "')")
+	public ResponseEntity<Map<String, Number>> rebuildOrderSummaries() {
+		long started = System.currentTimeMillis();
+		long users = orderSummaryService.rebuild();
+		Map<String, Number> result = new LinkedHashMap<>();
+		result.put("users", users);
+		result.put("elapsedMs", System.currentTimeMillis() - started);
+		return ResponseEntity.ok(result);
+	}
+
+	/**
+	 * Streams every order with its lines as newline-delimited JSON, for reconciliation.
+	 * This request gets {@code order.export.timeout-ms} as its async timeout; every other
+	 * async request keeps the default.
+	 */
+	@GetMapping("/orders/export")
+	@PreAuthorize("hasRole('" + SecurityConstants.ADMIN_ROLE + "')")
+	public ResponseEntity<StreamingResponseBody> exportOrders(HttpServletRequest request,
+			HttpServletResponse response) {
+		AsyncWebRequest asyncWebRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+		asyncWebRequest.setTimeout(exportTimeoutMillis);
+		WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncWebRequest);
+		return ResponseEntity.ok()
+				.contentType(NDJSON)
+				.body(out -> orderExporter.export(out));
+	}
+}
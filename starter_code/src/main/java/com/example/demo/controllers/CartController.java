@@ -1,29 +1,56 @@
 package com.example.demo.controllers;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import lombok.extern.log4j.Log4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.cart.CartETags;
+import com.example.demo.cart.CartUpdate;
+import com.example.demo.cart.WriteBehindCartStore;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchCartRequest;
+import com.example.demo.model.requests.CartOperation;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.security.TokenPrincipal;
+import com.example.demo.stats.StatsSource;
 
 @RestController
 @RequestMapping("/api/cart")
 @Log4j
-public class CartController {
+public class CartController implements StatsSource {
+
+	// a conflicting write is re-applied to a fresh copy of the cart at most this many times
+	static final int MAX_ATTEMPTS = 3;
+
+	static final int MAX_BATCH_OPERATIONS = 200;
 	
 	@Autowired
 	private UserRepository userRepository;
@@ -33,43 +60,230 @@ public class CartController {
 	
 	@Autowired
 	private ItemRepository itemRepository;
+
+	@Autowired
+	private WriteBehindCartStore cartStore;
+
+	private final LongAdder conflicts = new LongAdder();
+
+	private final LongAdder retries = new LongAdder();
+
+	private final LongAdder exhausted = new LongAdder();
+
+	private final LongAdder preconditionFailed = new LongAdder();
 	
-	@PostMapping("/addToCart")
-	public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+	/**
+	 * Reads the cart's lines with one projection query.
+	 */
+	@GetMapping("/{username}")
+	public ResponseEntity<CartResponse> getCart(@PathVariable String username) {
+		Long cartId = findCartId(username);
+		if(cartId == null) {
 			log.info("User not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
-		if(!item.isPresent()) {
-			log.info("Item not found");
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		if (cartStore.isEnabled()) {
+			cartStore.flush(cartId);
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.addItem(item.get()));
-		cartRepository.save(cart);
-		return ResponseEntity.ok(cart);
+		return ResponseEntity.ok(CartResponse.of(cartId, cartRepository.findLinesByCartId(cartId)));
+	}
+
+	@PostMapping("/addToCart")
+	public ResponseEntity<CartResponse> addTocart(@RequestBody ModifyCartRequest request,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		return modify(request.getUsername(), ifMatch, () -> {
+			Optional<Item> item = itemRepository.findById(request.getItemId());
+			if(!item.isPresent()) {
+				log.info("Item not found");
+				return null;
+			}
+			return cart -> cart.addItem(item.get(), request.getQuantity());
+		});
 	}
 	
 	@PostMapping("/removeFromCart")
-	public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+	public ResponseEntity<CartResponse> removeFromcart(@RequestBody ModifyCartRequest request,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		return modify(request.getUsername(), ifMatch, () -> {
+			Optional<Item> item = itemRepository.findById(request.getItemId());
+			if(!item.isPresent()) {
+				log.info("Item not found");
+				return null;
+			}
+			return cart -> cart.removeItem(item.get(), request.getQuantity());
+		});
+	}
+
+	/**
+	 * Applies a list of add, remove and set operations with one item query and one save.
+	 * The operations run in order against the same cart; if any item is unknown nothing
+	 * is applied.
+	 */
+	@PostMapping("/batch")
+	public ResponseEntity<CartResponse> batch(@RequestBody BatchCartRequest request,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		List<CartOperation> operations = request.getOperations();
+		if(operations == null || operations.isEmpty() || operations.size() > MAX_BATCH_OPERATIONS) {
+			log.info("Batch must contain 1 to " + MAX_BATCH_OPERATIONS + " operations");
+			return ResponseEntity.badRequest().build();
+		}
+		for (CartOperation operation : operations) {
+			if(operation == null || operation.getOp() == null || operation.getQuantity() < 0) {
+				log.info("Invalid cart operation");
+				return ResponseEntity.badRequest().build();
+			}
+		}
+		return modify(request.getUsername(), ifMatch, () -> {
+			Set<Long> itemIds = operations.stream().map(CartOperation::getItemId).collect(Collectors.toSet());
+			Map<Long, Item> items = new HashMap<>();
+			itemRepository.findAllById(itemIds).forEach(item -> items.put(item.getId(), item));
+			if(items.size() < itemIds.size()) {
+				log.info("Item not found");
+				return null;
+			}
+			return cart -> operations.forEach(operation -> apply(cart, operation, items.get(operation.getItemId())));
+		});
+	}
+
+	private static void apply(Cart cart, CartOperation operation, Item item) {
+		switch (operation.getOp()) {
+		case ADD:
+			cart.addItem(item, operation.getQuantity());
+			break;
+		case REMOVE:
+			cart.removeItem(item, operation.getQuantity());
+			break;
+		case SET:
+			cart.setItemQuantity(item, operation.getQuantity());
+			break;
+		default:
+			throw new IllegalArgumentException(String.valueOf(operation.getOp()));
+		}
+	}
+
+	/**
+	 * Finds the user's cart, then asks {@code preparation} for the change to make, which
+	 * returns {@code null} when a referenced item does not exist.
+	 */
+	private ResponseEntity<CartResponse> modify(String username, String ifMatch,
+			Supplier<Consumer<Cart>> preparation) {
+		return cartStore.isEnabled()
+				? modifyWriteBehind(username, ifMatch, preparation)
+				: modifyCart(username, ifMatch, preparation);
+	}
+
+	/**
+	 * Applies the modification to the in-memory copy of the cart; the database
+	 * catches up on the store's next flush.
+	 */
+	private ResponseEntity<CartResponse> modifyWriteBehind(String username, String ifMatch,
+			Supplier<Consumer<Cart>> preparation) {
+		Long cartId = findCartId(username);
+		if(cartId == null) {
 			log.info("User not found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
-		if(!item.isPresent()) {
-			log.info("Item not found");
+		Consumer<Cart> modification = preparation.get();
+		if(modification == null) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.removeItem(item.get()));
-		cartRepository.save(cart);
-		return ResponseEntity.ok(cart);
+		CartUpdate update = cartStore.modify(cartId, ifMatch, modification);
+		if(update == null) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		if(update.isPreconditionFailed()) {
+			preconditionFailed.increment();
+			return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(update.getETag()).build();
+		}
+		return ResponseEntity.ok().eTag(update.getETag()).body(update.getCart());
+	}
+
+	/**
+	 * Applies the modification and saves the cart under its optimistic version.
+	 * When another request committed first, the cart is read again and the modification
+	 * re-applied, unless the client sent {@code If-Match}, in which case it gets 412 and
+	 * decides for itself.
+	 */
+	private ResponseEntity<CartResponse> modifyCart(String username, String ifMatch,
+			Supplier<Consumer<Cart>> preparation) {
+		Cart cart = findCart(username);
+		if(cart == null) {
+			log.info("User not found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		Consumer<Cart> modification = preparation.get();
+		if(modification == null) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		for (int attempt = 1; ; attempt++) {
+			if (ifMatch != null && !CartETags.matches(ifMatch, eTag(cart))) {
+				preconditionFailed.increment();
+				return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(eTag(cart)).build();
+			}
+			modification.accept(cart);
+			try {
+				cartRepository.save(cart);
+				return ResponseEntity.ok().eTag(eTag(cart)).body(CartResponse.from(cart));
+			} catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+				// a concurrent first add of the same item surfaces as a cart_line unique key violation
+				conflicts.increment();
+				if (ifMatch != null) {
+					preconditionFailed.increment();
+					return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+				}
+				if (attempt >= MAX_ATTEMPTS) {
+					exhausted.increment();
+					log.warn("Giving up on cart update for " + username + " after " + attempt + " conflicts");
+					return ResponseEntity.status(HttpStatus.CONFLICT).build();
+				}
+				retries.increment();
+			}
+			// the rolled back transaction cleared the persistence context, so this reads the committed row
+			cart = findCart(username);
+			if(cart == null) {
+				return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+			}
+		}
+	}
+
+	/**
+	 * Loads the cart by the id carried in the caller's token, falling back to a lookup
+	 * by username for tokens without the claim or for another user's cart.
+	 */
+	private Cart findCart(String username) {
+		TokenPrincipal principal = TokenPrincipal.currentFor(username);
+		if (principal != null && principal.getCartId() != null) {
+			return cartRepository.findById(principal.getCartId()).orElse(null);
+		}
+		User user = userRepository.findByUsername(username);
+		return user == null ? null : user.getCart();
+	}
+
+	private Long findCartId(String username) {
+		TokenPrincipal principal = TokenPrincipal.currentFor(username);
+		if (principal != null && principal.getCartId() != null) {
+			return principal.getCartId();
+		}
+		return userRepository.findCartIdByUsername(username);
+	}
+
+	private static String eTag(Cart cart) {
+		return CartETags.of(cart.getVersion());
+	}
+
+	@Override
+	public String getStatsName() {
+		return "cartUpdates";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("conflicts", conflicts.sum());
+		stats.put("retries", retries.sum());
+		stats.put("exhausted", exhausted.sum());
+		stats.put("preconditionFailed", preconditionFailed.sum());
+		return stats;
 	}
 		
 }
@@ -1,39 +1,137 @@
 package com.example.demo.controllers;
 
 import java.util.List;
+import java.util.Optional;
 
 import lombok.extern.log4j.Log4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.catalog.CatalogQuery;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.EncodedPage;
+import com.example.demo.catalog.ItemSearchIndex;
 import com.example.demo.model.persistence.Item;
-import com.example.demo.model.persistence.repositories.ItemRepository;
 
 @RestController
 @RequestMapping("/api/item")
 @Log4j
 public class ItemController {
 
+	static final int DEFAULT_PAGE_SIZE = 50;
+
+	static final int MAX_PAGE_SIZE = 200;
+
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+	static final int DEFAULT_SEARCH_LIMIT = 10;
+
+	static final int MAX_SEARCH_LIMIT = 100;
+
+	// lets clients keep and revalidate responses; without it Spring Security sends no-store
+	static final CacheControl CATALOG_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+	@Autowired
+	private CatalogCache catalogCache;
+
 	@Autowired
-	private ItemRepository itemRepository;
+	private ItemSearchIndex searchIndex;
+
+	@Autowired
+	private CatalogVersion catalogVersion;
 	
+	/**
+	 * Lists the catalog a page at a time, sorted by {@code id}, {@code name} or
+	 * {@code price}. Pass either {@code page} or {@code after}, the {@code X-Next-Cursor}
+	 * of the previous page; the header is absent on the last page. With {@code page} a
+	 * full page always carries a cursor.
+	 * <p>
+	 * Pages are serialized once per catalog version and the cached bytes, gzipped when the
+	 * client accepts it, are written as they are.
+	 */
 	@GetMapping
-	public ResponseEntity<List<Item>> getItems() {
-		return ResponseEntity.ok(itemRepository.findAll());
+	public ResponseEntity<byte[]> getItems(@RequestParam(required = false) Integer page,
+			@RequestParam(required = false) Integer size,
+			@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(defaultValue = "asc") String direction,
+			@RequestParam(required = false) String after,
+			WebRequest webRequest) {
+		Optional<Sort.Direction> sortDirection = Sort.Direction.fromOptionalString(direction);
+		if (!sortDirection.isPresent() || (size != null && size < 1) || (page != null && page < 0)
+				|| (page != null && after != null)) {
+			log.info("Invalid item page request");
+			return ResponseEntity.badRequest().build();
+		}
+		int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+		CatalogQuery query;
+		try {
+			query = CatalogQuery.of(CatalogQuery.SortBy.fromString(sort), sortDirection.get(), page, after, pageSize);
+		} catch (IllegalArgumentException e) {
+			log.info("Invalid item sort or cursor");
+			return ResponseEntity.badRequest().build();
+		}
+		boolean gzip = acceptsGzip(webRequest);
+		// the gzipped body is a different representation, so it gets its own tag
+		String eTag = gzip ? gzipETag(catalogVersion.eTag()) : catalogVersion.eTag();
+		if (webRequest.checkNotModified(eTag, catalogVersion.lastModifiedMillis())) {
+			return null;
+		}
+		EncodedPage encoded = catalogCache.findPage(query);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.cacheControl(CATALOG_CACHE_CONTROL)
+				.varyBy(HttpHeaders.ACCEPT_ENCODING);
+		if (encoded.getNextCursor() != null) {
+			response.header(NEXT_CURSOR_HEADER, encoded.getNextCursor());
+		}
+		if (!gzip) {
+			return response.body(encoded.getJson());
+		}
+		return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.getGzip());
+	}
+	
+	/**
+	 * Items whose name or description contain every word of {@code q}, as a whole word,
+	 * a word prefix or a substring of three or more characters, best matches first.
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<List<Item>> searchItems(@RequestParam String q,
+			@RequestParam(required = false) Integer limit) {
+		if (q.trim().isEmpty() || (limit != null && limit < 1)) {
+			log.info("Invalid item search");
+			return ResponseEntity.badRequest().build();
+		}
+		int resultLimit = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+		return ResponseEntity.ok(searchIndex.search(q, resultLimit));
 	}
 	
 	@GetMapping("/{id}")
-	public ResponseEntity<Item> getItemById(@PathVariable Long id) {
-		return ResponseEntity.of(itemRepository.findById(id));
+	public ResponseEntity<Item> getItemById(@PathVariable Long id, WebRequest webRequest) {
+		if (notModified(webRequest)) {
+			return null;
+		}
+		return catalogCache.findById(id)
+				.map(item -> ResponseEntity.ok().cacheControl(CATALOG_CACHE_CONTROL).body(item))
+				.orElseGet(() -> ResponseEntity.notFound().build());
 	}
 	
 	@GetMapping("/name/{name}")
-	public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name) {
-		List<Item> items = itemRepository.findByName(name);
+	public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name, WebRequest webRequest) {
+		if (notModified(webRequest)) {
+			return null;
+		}
+		List<Item> items = catalogCache.findByName(name);
 //		return items == null || items.isEmpty() ? ResponseEntity.notFound().build()
 //				: ResponseEntity.ok(items);
 
@@ -41,8 +139,35 @@ public class ItemController {
 			log.info("Item not found");
 			return ResponseEntity.notFound().build();
 		} else {
-			return ResponseEntity.ok(items);
+			return ResponseEntity.ok().cacheControl(CATALOG_CACHE_CONTROL).body(items);
 		}
 	}
-	
+
+	/**
+	 * Answers {@code If-None-Match} / {@code If-Modified-Since} from the catalog version
+	 * alone, before any lookup or serialization, and sets {@code ETag} and
+	 * {@code Last-Modified} on the response either way. A {@code true} result means the
+	 * 304 is already set and the handler should return {@code null}.
+	 */
+	private boolean notModified(WebRequest webRequest) {
+		return webRequest.checkNotModified(catalogVersion.eTag(), catalogVersion.lastModifiedMillis());
+	}
+
+	private static boolean acceptsGzip(WebRequest webRequest) {
+		String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			if (parts[0].trim().equalsIgnoreCase("gzip")) {
+				return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+			}
+		}
+		return false;
+	}
+
+	private static String gzipETag(String eTag) {
+		return eTag.substring(0, eTag.length() - 1) + ".gz\"";
+	}
 }
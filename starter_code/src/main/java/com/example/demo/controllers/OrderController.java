@@ -1,54 +1,259 @@
 package com.example.demo.controllers;
 
+import java.net.URI;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 
 import lombok.extern.log4j.Log4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.example.demo.cart.WriteBehindCartStore;
 import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderStatusResponse;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.model.responses.UserOrderSummaryResponse;
+import com.example.demo.order.IdempotencyStore;
+import com.example.demo.order.OrderIngestionQueue;
+import com.example.demo.order.OrderSummaryService;
+import com.example.demo.security.TokenPrincipal;
 
 @RestController
 @RequestMapping("/api/order")
 @Log4j
 public class OrderController {
 	
+	static final int DEFAULT_HISTORY_PAGE_SIZE = 20;
+
+	static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+	static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+	static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+	
 	@Autowired
 	private UserRepository userRepository;
 	
+	@Autowired
+	private CartRepository cartRepository;
+	
 	@Autowired
 	private OrderRepository orderRepository;
+
+	@Autowired
+	private WriteBehindCartStore cartStore;
+
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+
+	@Autowired
+	private OrderIngestionQueue orderQueue;
+
+	@Autowired
+	private OrderSummaryService orderSummaryService;
+
+	@Autowired
+	private UserOrderSummaryRepository userOrderSummaryRepository;
 	
 	
+	/**
+	 * Places an order from the user's cart. With an {@code Idempotency-Key} header, repeats
+	 * of the same key get the first response back, marked {@code Idempotent-Replayed}.
+	 */
 	@PostMapping("/submit/{username}")
-	public ResponseEntity<UserOrder> submit(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<OrderResponse> submit(@PathVariable String username,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+		if (idempotencyKey == null) {
+			return placeOrder(username);
+		}
+		if (idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+			log.info("Invalid idempotency key");
+			return ResponseEntity.badRequest().build();
+		}
+		IdempotencyStore.Outcome<ResponseEntity<OrderResponse>> outcome;
+		try {
+			// keys are scoped to the user so two users can't collide on the same value
+			outcome = idempotencyStore.execute(username + '\n' + idempotencyKey, () -> placeOrder(username));
+		} catch (TimeoutException e) {
+			log.info("Order with idempotency key still in progress for " + username);
+			return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
+		ResponseEntity<OrderResponse> response = outcome.getValue();
+		if (!outcome.isReplayed()) {
+			return response;
+		}
+		return ResponseEntity.status(response.getStatusCode())
+				.headers(response.getHeaders())
+				.header(IDEMPOTENT_REPLAYED_HEADER, "true")
+				.body(response.getBody());
+	}
+
+	private ResponseEntity<OrderResponse> placeOrder(String username) {
+		if (cartStore.isEnabled()) {
+			flushCart(username);
+		}
+		Cart cart = findCart(username);
+		if(cart == null) {
 			log.info("User not found");
 			return ResponseEntity.notFound().build();
 		}
-		UserOrder order = UserOrder.createFromCart(user.getCart());
-		orderRepository.save(order);
-		return ResponseEntity.ok(order);
+		if (orderQueue.isEnabled()) {
+			return enqueueOrder(username, cart);
+		}
+		UserOrder order = UserOrder.createFromCart(cart);
+		orderSummaryService.save(order);
+		return ResponseEntity.ok(OrderResponse.from(order));
 	}
 	
+	/**
+	 * Accepts the order for the background writer and answers 202 with its reference and
+	 * a {@code Location} to poll.
+	 */
+	private ResponseEntity<OrderResponse> enqueueOrder(String username, Cart cart) {
+		OrderResponse accepted = orderQueue.submit(username, cart);
+		if (accepted == null) {
+			log.warn("Order queue full, rejecting order for " + username);
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
+		URI status = UriComponentsBuilder.fromPath("/api/order/status/{username}/{reference}")
+				.buildAndExpand(username, accepted.getReference()).toUri();
+		return ResponseEntity.accepted().location(status).body(accepted);
+	}
+
+	/**
+	 * Reports whether an order is still queued, persisted or failed. Works for orders placed
+	 * synchronously too, which are reported as persisted.
+	 */
+	@GetMapping("/status/{username}/{reference}")
+	public ResponseEntity<OrderStatusResponse> getOrderStatus(@PathVariable String username,
+			@PathVariable String reference) {
+		OrderStatusResponse status = orderQueue.status(reference);
+		if (status != null) {
+			return username.equals(orderQueue.ownerOf(reference))
+					? ResponseEntity.ok(status)
+					: ResponseEntity.notFound().build();
+		}
+		UserOrder order = orderRepository.findByReference(reference);
+		if (order == null || !username.equals(order.getUser().getUsername())) {
+			log.info("Order not found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(new OrderStatusResponse(reference, OrderStatusResponse.Status.PERSISTED, order.getId()));
+	}
+
+	/**
+	 * Pages through the user's orders by id. {@code after} is the {@code nextCursor} of the
+	 * previous page; {@code direction} is {@code asc} (oldest first) or {@code desc}.
+	 */
 	@GetMapping("/history/{username}")
-	public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<OrderHistoryPage> getOrdersForUser(@PathVariable String username,
+			@RequestParam(required = false) Integer size,
+			@RequestParam(required = false) Long after,
+			@RequestParam(defaultValue = "asc") String direction) {
+		Optional<Sort.Direction> sortDirection = Sort.Direction.fromOptionalString(direction);
+		if(!sortDirection.isPresent() || (size != null && size < 1)) {
+			log.info("Invalid history page request");
+			return ResponseEntity.badRequest().build();
+		}
+		Long userId = findUserId(username);
+		if(userId == null) {
+			log.info("User not found");
+			return ResponseEntity.notFound().build();
+		}
+		int pageSize = size == null ? DEFAULT_HISTORY_PAGE_SIZE : Math.min(size, MAX_HISTORY_PAGE_SIZE);
+		// one extra row tells whether another page follows, without a count query
+		Pageable limit = PageRequest.of(0, pageSize + 1);
+		List<OrderSummary> orders = sortDirection.get().isAscending()
+				? orderRepository.findSummariesAfter(userId, after == null ? 0L : after, limit)
+				: orderRepository.findSummariesBefore(userId, after == null ? Long.MAX_VALUE : after, limit);
+		Long nextCursor = null;
+		if (orders.size() > pageSize) {
+			orders = orders.subList(0, pageSize);
+			nextCursor = orders.get(pageSize - 1).getId();
+		}
+		return ResponseEntity.ok(new OrderHistoryPage(orders, nextCursor));
+	}
+
+	/**
+	 * Order count, total spend and last order time for the user, read from the summary
+	 * table by primary key rather than aggregated over the history.
+	 */
+	@GetMapping("/summary/{username}")
+	public ResponseEntity<UserOrderSummaryResponse> getOrderSummary(@PathVariable String username) {
+		Long userId = findUserId(username);
+		if(userId == null) {
 			log.info("User not found");
 			return ResponseEntity.notFound().build();
 		}
-		return ResponseEntity.ok(orderRepository.findByUser(user));
+		UserOrderSummary summary = userOrderSummaryRepository.findById(userId).orElse(null);
+		if (summary == null) {
+			return ResponseEntity.ok(new UserOrderSummaryResponse(0, Money.ZERO.toBigDecimal(), null));
+		}
+		return ResponseEntity.ok(new UserOrderSummaryResponse(summary.getOrderCount(), summary.getTotalSpend(),
+				summary.getLastOrderAt()));
+	}
+
+	/**
+	 * Loads the cart by the id carried in the caller's token, falling back to a lookup
+	 * by username for tokens without the claim or for another user's orders.
+	 */
+	private Cart findCart(String username) {
+		TokenPrincipal principal = TokenPrincipal.currentFor(username);
+		if (principal != null && principal.getCartId() != null) {
+			return cartRepository.findById(principal.getCartId()).orElse(null);
+		}
+		User user = userRepository.findByUsername(username);
+		return user == null ? null : user.getCart();
+	}
+
+	/**
+	 * Writes pending in-memory changes through, so the order is built from the cart
+	 * the user actually sees.
+	 */
+	private void flushCart(String username) {
+		TokenPrincipal principal = TokenPrincipal.currentFor(username);
+		Long cartId = principal != null && principal.getCartId() != null
+				? principal.getCartId()
+				: userRepository.findCartIdByUsername(username);
+		if (cartId != null) {
+			cartStore.flush(cartId);
+		}
+	}
+
+	/**
+	 * Takes the user id from the caller's token when it has one, so the history query is
+	 * the only statement.
+	 */
+	private Long findUserId(String username) {
+		TokenPrincipal principal = TokenPrincipal.currentFor(username);
+		if (principal != null && principal.getUserId() != null) {
+			return principal.getUserId();
+		}
+		User user = userRepository.findByUsername(username);
+		return user == null ? null : user.getId();
 	}
 }
@@ -2,15 +2,25 @@ package com.example.demo.controllers;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.RefreshTokenRequest;
+import com.example.demo.model.responses.TokenResponse;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.security.SecurityConstants;
+import com.example.demo.security.TokenRevocationService;
+import com.example.demo.security.TokenService;
+import com.example.demo.security.UserDetailsServiceImpl;
 import lombok.extern.log4j.Log4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/user")
 @Log4j
@@ -20,10 +30,16 @@ public class UserController {
     private UserRepository userRepository;
 
     @Autowired
-    private CartRepository cartRepository;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
 
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
 
     private static final String USERNAME_IS_EMPTY = "Username can't be empty";
 
@@ -33,6 +49,10 @@ public class UserController {
 
     private static final String CONFIRM_PASSWORD_DO_NOT_MATCH = "Password and confirm password don't match";
 
+    private static final String TOO_MANY_SIGNUPS = "Too many signups in progress, retry later";
+
+    private static final String REFRESH_TOKEN_IS_INVALID = "Refresh token is invalid";
+
     @GetMapping("/id/{id}")
     public ResponseEntity<User> findById(@PathVariable Long id) {
         return ResponseEntity.of(userRepository.findById(id));
@@ -51,40 +71,77 @@ public class UserController {
     }
 
     @PostMapping("/create")
-    public ResponseEntity<?> createUser(@RequestBody CreateUserRequest createUserRequest) {
+    public CompletableFuture<ResponseEntity<?>> createUser(@RequestBody CreateUserRequest createUserRequest) {
         User user = new User();
         user.setUsername(createUserRequest.getUsername());
-        Cart cart = new Cart();
-        cartRepository.save(cart);
-        user.setCart(cart);
 
         // check if username is empty
         if (createUserRequest.getUsername() == null || createUserRequest.getUsername().isEmpty()) {
             log.info(USERNAME_IS_EMPTY);
-            return ResponseEntity.badRequest().body(USERNAME_IS_EMPTY);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(USERNAME_IS_EMPTY));
         }
 
         // check if username exists
         if (userRepository.findByUsername(createUserRequest.getUsername()) != null) {
             log.info(USERNAME_EXISTS);
-            return ResponseEntity.badRequest().body(USERNAME_EXISTS);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(USERNAME_EXISTS));
         }
 
         // check if password is empty or less than 7 characters
         if (createUserRequest.getPassword() == null || createUserRequest.getPassword().isEmpty() || createUserRequest.getPassword().length() < 7) {
             log.info(PASSWORD_IS_INVALID);
-            return ResponseEntity.badRequest().body(PASSWORD_IS_INVALID);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(PASSWORD_IS_INVALID));
         }
 
         // check if confirm password is empty or matched with password
         if (createUserRequest.getConfirmPassword().isEmpty() || !createUserRequest.getPassword().equals(createUserRequest.getConfirmPassword())) {
             log.info(CONFIRM_PASSWORD_DO_NOT_MATCH);
-            return ResponseEntity.badRequest().body(CONFIRM_PASSWORD_DO_NOT_MATCH);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(CONFIRM_PASSWORD_DO_NOT_MATCH));
         }
 
-        user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
-        userRepository.save(user);
-        return ResponseEntity.ok(user);
+        // hash on the password hashing pool; the cart is persisted together with the user
+        try {
+            return passwordHashingService.encode(createUserRequest.getPassword())
+                    .<ResponseEntity<?>>thenApply(encodedPassword -> {
+                        user.setCart(new Cart());
+                        user.setPassword(encodedPassword);
+                        userRepository.save(user);
+                        userDetailsService.invalidate(user.getUsername());
+                        return ResponseEntity.ok(user);
+                    });
+        } catch (RejectedExecutionException e) {
+            log.info(TOO_MANY_SIGNUPS);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(TOO_MANY_SIGNUPS));
+        }
+    }
+
+    @PostMapping("/token/refresh")
+    public ResponseEntity<TokenResponse> refreshToken(@RequestBody RefreshTokenRequest refreshTokenRequest) {
+        TokenResponse tokens = refreshTokenRequest.getRefreshToken() == null ? null
+                : tokenService.refresh(refreshTokenRequest.getRefreshToken());
+        if (tokens == null) {
+            log.info(REFRESH_TOKEN_IS_INVALID);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok()
+                .header(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + tokens.getAccessToken())
+                .header(SecurityConstants.REFRESH_HEADER_STRING, tokens.getRefreshToken())
+                .body(tokens);
+    }
+
+    /**
+     * Revokes the caller's access token and, when given, its refresh token.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(SecurityConstants.HEADER_STRING) String authorization,
+                                       @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        tokenRevocationService.revoke(authorization.replace(SecurityConstants.TOKEN_PREFIX, ""));
+        if (refreshTokenRequest != null && refreshTokenRequest.getRefreshToken() != null) {
+            tokenService.revokeRefreshToken(refreshTokenRequest.getRefreshToken());
+        }
+        return ResponseEntity.noContent().build();
     }
 
 }
@@ -2,20 +2,26 @@ package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.MapKey;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -28,25 +34,41 @@ public class Cart {
 	@Column
 	private Long id;
 	
-	@ManyToMany
-	@JsonProperty
-	@Column
-    private List<Item> items;
+	@OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
+	@MapKey(name = "itemId")
+	@OrderBy("id")
+	@JsonIgnore
+	private Map<Long, CartLine> lines = new LinkedHashMap<>();
 	
 	@OneToOne(mappedBy = "cart")
 	@JsonProperty
     private User user;
 	
-	@Column
+	@Column(precision = 19, scale = Money.SCALE)
 	@JsonProperty
-	private BigDecimal total;
+	private Money total;
+
+	// bumped whenever the cart row changes, so concurrent read-modify-writes conflict instead of losing updates
+	@Version
+	@JsonIgnore
+	private long version;
+
+	// line changes alone only touch cart_line rows; counting them here keeps the cart row,
+	// and with it the version and ETag, changing on every modification
+	@Column(nullable = false)
+	@JsonIgnore
+	private long changeCount;
 	
 	public BigDecimal getTotal() {
-		return total;
+		return total == null ? null : total.toBigDecimal();
 	}
 
 	public void setTotal(BigDecimal total) {
-		this.total = total;
+		this.total = Money.of(total);
+	}
+
+	public Money getTotalAmount() {
+		return total;
 	}
 
 	public User getUser() {
@@ -57,6 +79,10 @@ public class Cart {
 		this.user = user;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
 	public Long getId() {
 		return id;
 	}
@@ -65,33 +91,93 @@ public class Cart {
 		this.id = id;
 	}
 
+	@JsonProperty("lines")
+	public Collection<CartLine> getLines() {
+		return Collections.unmodifiableCollection(lines.values());
+	}
+
+	/**
+	 * Compatibility view of the cart as one entry per unit, as it was serialized
+	 * before cart lines. Built on every call; prefer {@link #getLines()}.
+	 */
+	@JsonProperty("items")
 	public List<Item> getItems() {
+		List<Item> items = new ArrayList<>();
+		for (CartLine line : lines.values()) {
+			for (int i = 0; i < line.getQuantity(); i++) {
+				items.add(line.getItem());
+			}
+		}
 		return items;
 	}
 
+	/**
+	 * Replaces the contents with one unit per list entry and recomputes the total.
+	 */
 	public void setItems(List<Item> items) {
-		this.items = items;
+		lines.clear();
+		total = Money.ZERO;
+		changeCount++;
+		if (items != null) {
+			items.forEach(this::addItem);
+		}
 	}
 	
 	public void addItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		addItem(item, 1);
+	}
+
+	public void addItem(Item item, int quantity) {
+		if (quantity <= 0) {
+			return;
 		}
-		items.add(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		CartLine line = lines.get(item.getId());
+		if (line == null) {
+			line = new CartLine(this, item);
+			lines.put(item.getId(), line);
 		}
-		total = total.add(item.getPrice());
+		line.setQuantity(line.getQuantity() + quantity);
+		addToTotal(line.getUnitPriceAmount().times(quantity));
+		changeCount++;
 	}
 	
 	public void removeItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		removeItem(item, 1);
+	}
+
+	/**
+	 * Removes up to {@code quantity} units of the item; removing more than the cart
+	 * holds drops the line without taking the total below what was added for it.
+	 */
+	public void removeItem(Item item, int quantity) {
+		CartLine line = lines.get(item.getId());
+		if (line == null || quantity <= 0) {
+			return;
+		}
+		int removed = Math.min(quantity, line.getQuantity());
+		if (removed == line.getQuantity()) {
+			lines.remove(item.getId());
+		} else {
+			line.setQuantity(line.getQuantity() - removed);
 		}
-		items.remove(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		addToTotal(line.getUnitPriceAmount().times(-removed));
+		changeCount++;
+	}
+
+	/**
+	 * Adds or removes units so the cart holds exactly {@code quantity} of the item.
+	 */
+	public void setItemQuantity(Item item, int quantity) {
+		CartLine line = lines.get(item.getId());
+		int current = line == null ? 0 : line.getQuantity();
+		if (quantity > current) {
+			addItem(item, quantity - current);
+		} else {
+			removeItem(item, current - quantity);
 		}
-		total = total.subtract(item.getPrice());
+	}
+
+	private void addToTotal(Money amount) {
+		total = total == null ? amount : total.plus(amount);
 	}
 }
@@ -0,0 +1,100 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One row per distinct item in a cart. Adding or removing units only changes
+ * {@link #quantity}, whatever the number of units.
+ */
+@Entity
+@Table(name = "cart_line", uniqueConstraints = @UniqueConstraint(columnNames = {"cart_id", "item_id"}))
+public class CartLine {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@JsonIgnore
+	private Long id;
+
+	@ManyToOne(optional = false)
+	@JoinColumn(name = "cart_id", nullable = false)
+	@JsonIgnore
+	private Cart cart;
+
+	@ManyToOne(optional = false)
+	@JoinColumn(name = "item_id", nullable = false)
+	@JsonProperty
+	private Item item;
+
+	// read-only copy of the foreign key, used as the key of Cart#lines
+	@Column(name = "item_id", insertable = false, updatable = false)
+	@JsonIgnore
+	private Long itemId;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	@Column(nullable = false, precision = 19, scale = Money.SCALE)
+	@JsonProperty
+	private Money unitPrice;
+
+	protected CartLine() {
+	}
+
+	CartLine(Cart cart, Item item) {
+		this.cart = cart;
+		this.item = item;
+		this.itemId = item.getId();
+		this.unitPrice = Money.of(item.getPrice());
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Cart getCart() {
+		return cart;
+	}
+
+	public Item getItem() {
+		return item;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public BigDecimal getUnitPrice() {
+		return unitPrice.toBigDecimal();
+	}
+
+	public Money getUnitPriceAmount() {
+		return unitPrice;
+	}
+
+	@JsonProperty
+	public BigDecimal getLineTotal() {
+		return unitPrice.times(quantity).toBigDecimal();
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.demo.model.persistence;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * An amount in the shop currency, held as a {@code long} count of cents. Cart and order
+ * arithmetic stays in primitive adds and multiplies; {@link BigDecimal} only appears at
+ * the column and JSON boundaries, where it has the same scale as before.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SCALE = 2;
+
+	public static final Money ZERO = new Money(0);
+
+	private final long minorUnits;
+
+	private Money(long minorUnits) {
+		this.minorUnits = minorUnits;
+	}
+
+	public static Money ofMinorUnits(long minorUnits) {
+		return minorUnits == 0 ? ZERO : new Money(minorUnits);
+	}
+
+	/**
+	 * Converts a decimal amount, rounding half-even to whole cents.
+	 *
+	 * @throws ArithmeticException if the amount does not fit in a {@code long} of cents
+	 */
+	@JsonCreator
+	public static Money of(BigDecimal amount) {
+		if (amount == null) {
+			return null;
+		}
+		return ofMinorUnits(amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact());
+	}
+
+	public long getMinorUnits() {
+		return minorUnits;
+	}
+
+	public Money plus(Money other) {
+		return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+	}
+
+	public Money minus(Money other) {
+		return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+	}
+
+	public Money times(long quantity) {
+		return ofMinorUnits(Math.multiplyExact(minorUnits, quantity));
+	}
+
+	@JsonValue
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(minorUnits, SCALE);
+	}
+
+	@Override
+	public int compareTo(Money other) {
+		return Long.compare(minorUnits, other.minorUnits);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Money && ((Money) obj).minorUnits == minorUnits;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(minorUnits);
+	}
+
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.MapsId;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What was bought in an order, captured at submission. Lines are written once and never
+ * updated, and only keep the item's id, so placing an order does not touch the
+ * {@code item} table and later catalog changes do not rewrite history.
+ */
+@Entity
+@Immutable
+@Table(name = "order_line")
+public class OrderLine {
+
+	@EmbeddedId
+	@JsonIgnore
+	private OrderLineId id;
+
+	@MapsId("orderId")
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@JoinColumn(name = "order_id")
+	@JsonIgnore
+	private UserOrder order;
+
+	@Column(name = "item_id", nullable = false)
+	@JsonProperty
+	private Long itemId;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private String name;
+
+	@Column(nullable = false, precision = 19, scale = Money.SCALE)
+	@JsonProperty
+	private Money unitPrice;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	protected OrderLine() {
+	}
+
+	OrderLine(UserOrder order, int lineNumber, CartLine line) {
+		this.id = new OrderLineId(lineNumber);
+		this.order = order;
+		this.itemId = line.getItemId();
+		this.name = line.getItem().getName();
+		this.unitPrice = line.getUnitPriceAmount();
+		this.quantity = line.getQuantity();
+	}
+
+	@JsonIgnore
+	public Long getOrderId() {
+		return id.getOrderId();
+	}
+
+	public int getLineNumber() {
+		return id.getLineNumber();
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BigDecimal getUnitPrice() {
+		return unitPrice.toBigDecimal();
+	}
+
+	public Money getUnitPriceAmount() {
+		return unitPrice;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.demo.model.persistence;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+@Embeddable
+public class OrderLineId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(name = "order_id")
+	private Long orderId;
+
+	@Column(name = "line_number")
+	private int lineNumber;
+
+	protected OrderLineId() {
+	}
+
+	OrderLineId(int lineNumber) {
+		this.lineNumber = lineNumber;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof OrderLineId))
+			return false;
+		OrderLineId other = (OrderLineId) obj;
+		return lineNumber == other.lineNumber && Objects.equals(orderId, other.orderId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(orderId, lineNumber);
+	}
+}
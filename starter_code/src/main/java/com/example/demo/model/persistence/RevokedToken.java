@@ -0,0 +1,42 @@
+package com.example.demo.model.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken {
+
+	@Id
+	@Column(length = 64)
+	private String jti;
+
+	@Column(nullable = false)
+	private long expiresAt;
+
+	public RevokedToken() {
+	}
+
+	public RevokedToken(String jti, long expiresAt) {
+		this.jti = jti;
+		this.expiresAt = expiresAt;
+	}
+
+	public String getJti() {
+		return jti;
+	}
+
+	public void setJti(String jti) {
+		this.jti = jti;
+	}
+
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(long expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+}
@@ -1,8 +1,10 @@
 package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -10,16 +12,17 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
-import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-@Table(name = "user_order")
+@Table(name = "user_order", indexes = @Index(name = "idx_user_order_user_id_id", columnList = "user_id, id"))
 public class UserOrder {
 
 	@Id
@@ -28,19 +31,34 @@ public class UserOrder {
 	@Column
 	private Long id;
 	
-	@ManyToMany(cascade = CascadeType.ALL)
+	@OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST)
+	@OrderBy("id.lineNumber")
 	@JsonProperty
-	@Column
-    private List<Item> items;
+	private List<OrderLine> lines = new ArrayList<>();
 	
 	@ManyToOne
 	@JoinColumn(name="user_id", nullable = false, referencedColumnName = "id")
 	@JsonProperty
     private User user;
 	
+	@JsonProperty
+	@Column(precision = 19, scale = Money.SCALE)
+	private Money total;
+
+	// client-facing handle, assigned before the order has an id
+	@JsonProperty
+	@Column(unique = true, length = 36)
+	private String reference;
+
+	// units in the order, kept so history summaries don't need to join the lines
+	@JsonProperty
+	@Column(nullable = false)
+	private int itemCount;
+
+	// epoch millis when the order was placed
 	@JsonProperty
 	@Column
-	private BigDecimal total;
+	private Long createdAt;
 
 	public Long getId() {
 		return id;
@@ -50,12 +68,8 @@ public class UserOrder {
 		this.id = id;
 	}
 
-	public List<Item> getItems() {
-		return items;
-	}
-
-	public void setItems(List<Item> items) {
-		this.items = items;
+	public List<OrderLine> getLines() {
+		return Collections.unmodifiableList(lines);
 	}
 
 	public User getUser() {
@@ -67,17 +81,37 @@ public class UserOrder {
 	}
 	
 	public BigDecimal getTotal() {
-		return total;
+		return total == null ? null : total.toBigDecimal();
 	}
 
 	public void setTotal(BigDecimal total) {
-		this.total = total;
+		this.total = Money.of(total);
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public Long getCreatedAt() {
+		return createdAt;
 	}
 
+	/**
+	 * Snapshots the cart's lines, names and prices into a new order.
+	 */
 	public static UserOrder createFromCart(Cart cart) {
 		UserOrder order = new UserOrder();
-		order.setItems(cart.getItems().stream().collect(Collectors.toList()));
-		order.setTotal(cart.getTotal());
+		for (CartLine line : cart.getLines()) {
+			order.lines.add(new OrderLine(order, order.lines.size() + 1, line));
+			order.itemCount += line.getQuantity();
+		}
+		order.total = cart.getTotalAmount();
+		order.reference = UUID.randomUUID().toString();
+		order.createdAt = System.currentTimeMillis();
 		order.setUser(cart.getUser());
 		return order;
 	}
@@ -0,0 +1,52 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Per-user order totals, kept up to date as orders are placed so they can be read with
+ * a single primary key lookup.
+ */
+@Entity
+@Table(name = "user_order_summary")
+public class UserOrderSummary {
+
+	@Id
+	@Column(name = "user_id")
+	private Long userId;
+
+	@Column(nullable = false)
+	private long orderCount;
+
+	@Column(nullable = false, precision = 19, scale = Money.SCALE)
+	private Money totalSpend;
+
+	@Column
+	private Long lastOrderAt;
+
+	protected UserOrderSummary() {
+	}
+
+	public Long getUserId() {
+		return userId;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public BigDecimal getTotalSpend() {
+		return totalSpend.toBigDecimal();
+	}
+
+	/**
+	 * Epoch millis of the latest order, or {@code null} if none recorded a time.
+	 */
+	public Long getLastOrderAt() {
+		return lastOrderAt;
+	}
+}
@@ -1,13 +1,22 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
+import com.example.demo.model.responses.LineItemResponse;
 
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
 	Cart findByUser(User user);
+
+	@Query("select new com.example.demo.model.responses.LineItemResponse(l.item.id, l.item.name, l.unitPrice, l.quantity) "
+			+ "from CartLine l where l.cart.id = :cartId order by l.id")
+	List<LineItemResponse> findLinesByCartId(@Param("cartId") long cartId);
 }
@@ -1,8 +1,12 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.math.BigDecimal;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Item;
 import org.springframework.stereotype.Repository;
@@ -11,4 +15,30 @@ import org.springframework.stereotype.Repository;
 public interface ItemRepository extends JpaRepository<Item, Long> {
 	List<Item> findByName(String name);
 
+	/**
+	 * Page of the catalog in the order given by {@code page}, without a count query.
+	 */
+	List<Item> findAllBy(Pageable page);
+
+	/*
+	 * Keyset pages: items strictly after or before the (value, id) of the previous page's
+	 * last item. Callers sort by the same columns through the Pageable; the name and price
+	 * sorts are served by the (name, id) and (price, id) indexes.
+	 */
+
+	List<Item> findByIdGreaterThan(long id, Pageable page);
+
+	List<Item> findByIdLessThan(long id, Pageable page);
+
+	@Query("select i from Item i where i.name > :name or (i.name = :name and i.id > :id)")
+	List<Item> findAfterName(@Param("name") String name, @Param("id") long id, Pageable page);
+
+	@Query("select i from Item i where i.name < :name or (i.name = :name and i.id < :id)")
+	List<Item> findBeforeName(@Param("name") String name, @Param("id") long id, Pageable page);
+
+	@Query("select i from Item i where i.price > :price or (i.price = :price and i.id > :id)")
+	List<Item> findAfterPrice(@Param("price") BigDecimal price, @Param("id") long id, Pageable page);
+
+	@Query("select i from Item i where i.price < :price or (i.price = :price and i.id < :id)")
+	List<Item> findBeforePrice(@Param("price") BigDecimal price, @Param("id") long id, Pageable page);
 }
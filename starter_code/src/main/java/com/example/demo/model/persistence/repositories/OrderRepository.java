@@ -1,14 +1,61 @@
 package com.example.demo.model.persistence.repositories;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.example.demo.model.persistence.OrderLine;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.responses.OrderExportRow;
+import com.example.demo.model.responses.OrderSummary;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
 	List<UserOrder> findByUser(User user);
+
+	UserOrder findByReference(String reference);
+
+	/**
+	 * Keyset page of a user's orders with ids above {@code after}, oldest first. Served
+	 * by the {@code (user_id, id)} index; pass the page size through {@code page}.
+	 */
+	@Query("select new com.example.demo.model.responses.OrderSummary(o.id, o.total, o.itemCount) "
+			+ "from UserOrder o where o.user.id = :userId and o.id > :after order by o.id asc")
+	List<OrderSummary> findSummariesAfter(@Param("userId") long userId, @Param("after") long after, Pageable page);
+
+	/**
+	 * Keyset page of a user's orders with ids below {@code before}, newest first.
+	 */
+	@Query("select new com.example.demo.model.responses.OrderSummary(o.id, o.total, o.itemCount) "
+			+ "from UserOrder o where o.user.id = :userId and o.id < :before order by o.id desc")
+	List<OrderSummary> findSummariesBefore(@Param("userId") long userId, @Param("before") long before, Pageable page);
+
+	/**
+	 * Every order, by id, read through a database cursor. Must be consumed and closed
+	 * inside a transaction.
+	 */
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "500"))
+	@Query("select new com.example.demo.model.responses.OrderExportRow("
+			+ "o.id, o.reference, u.id, u.username, o.total, o.itemCount, o.createdAt) "
+			+ "from UserOrder o join o.user u order by o.id")
+	Stream<OrderExportRow> streamExportRows();
+
+	/**
+	 * Every order line, ordered by order id like {@link #streamExportRows()} so the two
+	 * can be merged without holding either in memory.
+	 */
+	@QueryHints({
+			@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "500"),
+			@QueryHint(name = org.hibernate.annotations.QueryHints.READ_ONLY, value = "true")})
+	@Query("select l from OrderLine l order by l.id.orderId, l.id.lineNumber")
+	Stream<OrderLine> streamAllLinesOrderedByOrderId();
 }
@@ -0,0 +1,17 @@
+package com.example.demo.model.persistence.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.model.persistence.RevokedToken;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+	List<RevokedToken> findByExpiresAtGreaterThan(long now);
+
+	@Transactional
+	long deleteByExpiresAtLessThanEqual(long now);
+}
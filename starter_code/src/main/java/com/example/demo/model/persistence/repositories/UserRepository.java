@@ -1,6 +1,10 @@
 package com.example.demo.model.persistence.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.model.persistence.User;
 import org.springframework.stereotype.Repository;
@@ -8,4 +12,13 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 	User findByUsername(String username);
+
+	@Query("select u.cart.id from User u where u.username = :username")
+	Long findCartIdByUsername(@Param("username") String username);
+
+	@Modifying
+	@Transactional
+	@Query("update User u set u.password = :newPassword where u.username = :username and u.password = :oldPassword")
+	int updatePassword(@Param("username") String username, @Param("oldPassword") String oldPassword,
+			@Param("newPassword") String newPassword);
 }
@@ -0,0 +1,75 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CartResponse {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	@JsonProperty
+	private final List<LineItemResponse> lines;
+
+	public CartResponse(Long id, BigDecimal total, int itemCount, List<LineItemResponse> lines) {
+		this.id = id;
+		this.total = total;
+		this.itemCount = itemCount;
+		this.lines = lines;
+	}
+
+	public static CartResponse from(Cart cart) {
+		List<LineItemResponse> lines = new ArrayList<>(cart.getLines().size());
+		int itemCount = 0;
+		for (CartLine line : cart.getLines()) {
+			lines.add(new LineItemResponse(line.getItemId(), line.getItem().getName(),
+					line.getUnitPriceAmount(), line.getQuantity()));
+			itemCount += line.getQuantity();
+		}
+		return new CartResponse(cart.getId(), cart.getTotal(), itemCount, lines);
+	}
+
+	/**
+	 * Builds the response from projected lines, totalling them on the way.
+	 */
+	public static CartResponse of(Long id, List<LineItemResponse> lines) {
+		Money total = Money.ZERO;
+		int itemCount = 0;
+		for (LineItemResponse line : lines) {
+			total = total.plus(Money.of(line.getUnitPrice()).times(line.getQuantity()));
+			itemCount += line.getQuantity();
+		}
+		return new CartResponse(id, total.toBigDecimal(), itemCount, lines);
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	/**
+	 * Number of units across all lines.
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public List<LineItemResponse> getLines() {
+		return lines;
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One item of a cart or order with its quantity, without the item's description or
+ * any back references.
+ */
+public class LineItemResponse {
+
+	@JsonProperty
+	private final Long itemId;
+
+	@JsonProperty
+	private final String name;
+
+	@JsonProperty
+	private final BigDecimal unitPrice;
+
+	@JsonProperty
+	private final int quantity;
+
+	/**
+	 * Used by JPQL constructor expressions.
+	 */
+	public LineItemResponse(Long itemId, String name, Money unitPrice, int quantity) {
+		this.itemId = itemId;
+		this.name = name;
+		this.unitPrice = unitPrice.toBigDecimal();
+		this.quantity = quantity;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BigDecimal getUnitPrice() {
+		return unitPrice;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+}
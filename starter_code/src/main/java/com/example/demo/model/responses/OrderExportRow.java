@@ -0,0 +1,65 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One order in the reconciliation export, read by projection so no order or user
+ * entities are loaded. Lines are attached by the exporter.
+ */
+public class OrderExportRow {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonProperty
+	private final Long userId;
+
+	@JsonProperty
+	private final String username;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	@JsonProperty
+	private final Long createdAt;
+
+	@JsonProperty
+	private final List<LineItemResponse> lines = new ArrayList<>();
+
+	/**
+	 * Used by JPQL constructor expressions.
+	 */
+	public OrderExportRow(Long id, String reference, Long userId, String username, Money total, int itemCount,
+			Long createdAt) {
+		this.id = id;
+		this.reference = reference;
+		this.userId = userId;
+		this.username = username;
+		this.total = total == null ? null : total.toBigDecimal();
+		this.itemCount = itemCount;
+		this.createdAt = createdAt;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public List<LineItemResponse> getLines() {
+		return lines;
+	}
+
+	public void addLine(LineItemResponse line) {
+		lines.add(line);
+	}
+}
@@ -0,0 +1,34 @@
+package com.example.demo.model.responses;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of a user's order history. Pass {@link #getNextCursor()} back as {@code after}
+ * with the same direction to read the next page.
+ */
+public class OrderHistoryPage {
+
+	@JsonProperty
+	private final List<OrderSummary> orders;
+
+	@JsonProperty
+	private final Long nextCursor;
+
+	public OrderHistoryPage(List<OrderSummary> orders, Long nextCursor) {
+		this.orders = orders;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<OrderSummary> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * Id of the last order on this page, or {@code null} when there are no more orders.
+	 */
+	public Long getNextCursor() {
+		return nextCursor;
+	}
+}
@@ -0,0 +1,71 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.UserOrder;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderResponse {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	@JsonProperty
+	private final List<LineItemResponse> lines;
+
+	public OrderResponse(Long id, String reference, BigDecimal total, int itemCount, List<LineItemResponse> lines) {
+		this.id = id;
+		this.reference = reference;
+		this.total = total;
+		this.itemCount = itemCount;
+		this.lines = lines;
+	}
+
+	public static OrderResponse from(UserOrder order) {
+		List<LineItemResponse> lines = new ArrayList<>(order.getLines().size());
+		for (OrderLine line : order.getLines()) {
+			lines.add(new LineItemResponse(line.getItemId(), line.getName(), line.getUnitPriceAmount(),
+					line.getQuantity()));
+		}
+		return new OrderResponse(order.getId(), order.getReference(), order.getTotal(), order.getItemCount(), lines);
+	}
+
+	/**
+	 * Database id, or {@code null} while an accepted order is still queued.
+	 */
+	public Long getId() {
+		return id;
+	}
+
+	/**
+	 * Handle for {@code GET /api/order/status/{username}/{reference}}; set before the id
+	 * for orders accepted asynchronously.
+	 */
+	public String getReference() {
+		return reference;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public List<LineItemResponse> getLines() {
+		return lines;
+	}
+}
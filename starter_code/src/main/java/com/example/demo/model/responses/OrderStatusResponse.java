@@ -0,0 +1,40 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderStatusResponse {
+
+	public enum Status {
+		QUEUED, PERSISTED, FAILED
+	}
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonProperty
+	private final Status status;
+
+	@JsonProperty
+	private final Long orderId;
+
+	public OrderStatusResponse(String reference, Status status, Long orderId) {
+		this.reference = reference;
+		this.status = status;
+		this.orderId = orderId;
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Database id once the order is persisted.
+	 */
+	public Long getOrderId() {
+		return orderId;
+	}
+}
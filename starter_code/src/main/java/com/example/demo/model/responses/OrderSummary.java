@@ -0,0 +1,42 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * An order in a user's history, read by a single-table projection.
+ */
+public class OrderSummary {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	/**
+	 * Used by JPQL constructor expressions.
+	 */
+	public OrderSummary(Long id, Money total, int itemCount) {
+		this.id = id;
+		this.total = total == null ? null : total.toBigDecimal();
+		this.itemCount = itemCount;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+}
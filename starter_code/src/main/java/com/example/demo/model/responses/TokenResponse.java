@@ -0,0 +1,36 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class TokenResponse {
+
+	@JsonProperty
+	private final String accessToken;
+
+	@JsonProperty
+	private final String refreshToken;
+
+	@JsonProperty
+	private final long expiresIn;
+
+	public TokenResponse(String accessToken, String refreshToken, long expiresIn) {
+		this.accessToken = accessToken;
+		this.refreshToken = refreshToken;
+		this.expiresIn = expiresIn;
+	}
+
+	public String getAccessToken() {
+		return accessToken;
+	}
+
+	public String getRefreshToken() {
+		return refreshToken;
+	}
+
+	/**
+	 * Access token lifetime in seconds.
+	 */
+	public long getExpiresIn() {
+		return expiresIn;
+	}
+}
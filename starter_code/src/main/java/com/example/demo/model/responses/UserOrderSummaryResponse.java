@@ -0,0 +1,38 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class UserOrderSummaryResponse {
+
+	@JsonProperty
+	private final long orderCount;
+
+	@JsonProperty
+	private final BigDecimal totalSpend;
+
+	@JsonProperty
+	private final Long lastOrderAt;
+
+	public UserOrderSummaryResponse(long orderCount, BigDecimal totalSpend, Long lastOrderAt) {
+		this.orderCount = orderCount;
+		this.totalSpend = totalSpend;
+		this.lastOrderAt = lastOrderAt;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public BigDecimal getTotalSpend() {
+		return totalSpend;
+	}
+
+	/**
+	 * Epoch millis of the latest order, or {@code null} when the user has none.
+	 */
+	public Long getLastOrderAt() {
+		return lastOrderAt;
+	}
+}
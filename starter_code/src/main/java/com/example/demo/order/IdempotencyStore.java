@@ -0,0 +1,139 @@
+package com.example.demo.order;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.stats.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of requests sent with an {@code Idempotency-Key}. The first
+ * request for a key runs; repeats within the TTL get the stored outcome, and repeats
+ * that arrive while the first is still running wait for it. Failed executions are
+ * forgotten so the client can retry them.
+ */
+@Component
+public class IdempotencyStore implements StatsSource {
+
+	public static final int MAX_KEY_LENGTH = 255;
+
+	private final BoundedCache<String, CompletableFuture<Object>> outcomes;
+
+	private final long waitMillis;
+
+	private final LongAdder executed = new LongAdder();
+
+	private final LongAdder replayed = new LongAdder();
+
+	private final LongAdder waited = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder timedOut = new LongAdder();
+
+	public IdempotencyStore(@Value("${order.idempotency.maximum-keys:100000}") int maximumKeys,
+			@Value("${order.idempotency.ttl-ms:86400000}") long ttlMillis,
+			@Value("${order.idempotency.wait-ms:10000}") long waitMillis) {
+		this.outcomes = new BoundedCache<>(maximumKeys, ttlMillis);
+		this.waitMillis = waitMillis;
+	}
+
+	/**
+	 * Runs {@code action} once per key.
+	 *
+	 * @param key the client's key, already scoped to the caller
+	 * @throws TimeoutException if an earlier request with this key is still running after
+	 *         {@code order.idempotency.wait-ms}
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Outcome<T> execute(String key, Supplier<T> action) throws TimeoutException {
+		while (true) {
+			CompletableFuture<Object> mine = new CompletableFuture<>();
+			CompletableFuture<Object> existing = outcomes.putIfAbsent(key, mine);
+			if (existing == null) {
+				return new Outcome<>((T) run(key, mine, action), false);
+			}
+			if (existing.isDone()) {
+				replayed.increment();
+			} else {
+				waited.increment();
+			}
+			try {
+				return new Outcome<>((T) existing.get(waitMillis, TimeUnit.MILLISECONDS), true);
+			} catch (ExecutionException e) {
+				// the first attempt failed and removed itself; take over the key
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException("Interrupted waiting for idempotent request " + key);
+			} catch (TimeoutException e) {
+				timedOut.increment();
+				throw e;
+			}
+		}
+	}
+
+	private Object run(String key, CompletableFuture<Object> mine, Supplier<?> action) {
+		executed.increment();
+		try {
+			Object result = action.get();
+			mine.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			failed.increment();
+			outcomes.remove(key, mine);
+			mine.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public String getStatsName() {
+		return "idempotency";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		long hits = replayed.sum() + waited.sum();
+		long total = hits + executed.sum();
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("size", outcomes.size());
+		stats.put("executed", executed.sum());
+		stats.put("replayed", replayed.sum());
+		stats.put("waitedForInFlight", waited.sum());
+		stats.put("failed", failed.sum());
+		stats.put("timedOut", timedOut.sum());
+		stats.put("replayRatio", total == 0 ? 0d : (double) hits / total);
+		return stats;
+	}
+
+	public static final class Outcome<T> {
+
+		private final T value;
+
+		private final boolean replayed;
+
+		private Outcome(T value, boolean replayed) {
+			this.value = value;
+			this.replayed = replayed;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * Whether the value was produced by an earlier request with the same key.
+		 */
+		public boolean isReplayed() {
+			return replayed;
+		}
+	}
+}
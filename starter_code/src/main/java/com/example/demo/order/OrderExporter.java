@@ -0,0 +1,116 @@
+package com.example.demo.order;
+
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.LineItemResponse;
+import com.example.demo.model.responses.OrderExportRow;
+import com.example.demo.stats.StatsSource;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.log4j.Log4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Writes every order as newline-delimited JSON. Orders and their lines are read through
+ * two cursors, both ordered by order id, and merged as they arrive, so memory use does
+ * not grow with the number of orders.
+ */
+@Component
+@Log4j
+public class OrderExporter implements StatsSource {
+
+	// orders written between persistence context clears and output flushes
+	static final int CLEAR_INTERVAL = 500;
+
+	private final OrderRepository orderRepository;
+
+	private final ObjectWriter writer;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final LongAdder exports = new LongAdder();
+
+	private final LongAdder ordersExported = new LongAdder();
+
+	private volatile long lastExportMillis;
+
+	public OrderExporter(OrderRepository orderRepository, ObjectMapper objectMapper) {
+		this.orderRepository = orderRepository;
+		// the generator's own buffer decides when to write, not every order
+		this.writer = objectMapper.writerFor(OrderExportRow.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * Streams all orders to {@code out}, one JSON object per line. Leaves {@code out} open.
+	 *
+	 * @return the number of orders written
+	 */
+	@Transactional(readOnly = true)
+	public long export(OutputStream out) throws IOException {
+		long started = System.currentTimeMillis();
+		long count = 0;
+		try (JsonGenerator generator = writer.getFactory().createGenerator(out);
+				Stream<OrderExportRow> orders = orderRepository.streamExportRows();
+				Stream<OrderLine> lines = orderRepository.streamAllLinesOrderedByOrderId()) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(new SerializedString("\n"));
+			Iterator<OrderLine> lineIterator = lines.iterator();
+			OrderLine line = lineIterator.hasNext() ? lineIterator.next() : null;
+			Iterator<OrderExportRow> orderIterator = orders.iterator();
+			while (orderIterator.hasNext()) {
+				OrderExportRow order = orderIterator.next();
+				while (line != null && line.getOrderId() <= order.getId()) {
+					if (line.getOrderId().equals(order.getId())) {
+						order.addLine(new LineItemResponse(line.getItemId(), line.getName(),
+								line.getUnitPriceAmount(), line.getQuantity()));
+					}
+					line = lineIterator.hasNext() ? lineIterator.next() : null;
+				}
+				writer.writeValue(generator, order);
+				if (++count % CLEAR_INTERVAL == 0) {
+					generator.flush();
+					// lines already written are never read again
+					entityManager.clear();
+				}
+			}
+			if (count > 0) {
+				generator.writeRaw('\n');
+			}
+		}
+		exports.increment();
+		ordersExported.add(count);
+		lastExportMillis = System.currentTimeMillis() - started;
+		log.info("Exported " + count + " orders in " + lastExportMillis + " ms");
+		return count;
+	}
+
+	@Override
+	public String getStatsName() {
+		return "orderExport";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("exports", exports.sum());
+		stats.put("ordersExported", ordersExported.sum());
+		stats.put("lastExportMs", lastExportMillis);
+		return stats;
+	}
+}
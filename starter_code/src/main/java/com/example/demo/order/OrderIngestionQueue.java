@@ -0,0 +1,343 @@
+package com.example.demo.order;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.responses.LineItemResponse;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderStatusResponse;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Optional asynchronous order placement ({@code order.async.enabled}). Submissions are
+ * snapshotted from the cart and put on a bounded queue; a single writer thread drains
+ * up to {@code order.async.batch-size} of them at a time and inserts them with JDBC
+ * batches in one transaction. Callers track their order by reference through
+ * {@link #status(String)}.
+ */
+@Component
+@Log4j
+public class OrderIngestionQueue implements StatsSource {
+
+	private final boolean enabled;
+
+	private final int batchSize;
+
+	private final long maxWaitMillis;
+
+	private final BlockingQueue<PendingOrder> queue;
+
+	private final BoundedCache<String, PendingOrder> tickets;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final OrderSummaryService orderSummaryService;
+
+	private volatile boolean running;
+
+	private Thread writer;
+
+	private final LongAdder accepted = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder persisted = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+	private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+	private final LongAdder latencyNanosTotal = new LongAdder();
+
+	private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+	private volatile long lastBatchSize;
+
+	public OrderIngestionQueue(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			OrderSummaryService orderSummaryService,
+			@Value("${order.async.enabled:false}") boolean enabled,
+			@Value("${order.async.queue-capacity:10000}") int queueCapacity,
+			@Value("${order.async.batch-size:200}") int batchSize,
+			@Value("${order.async.max-wait-ms:20}") long maxWaitMillis,
+			@Value("${order.async.status-ttl-ms:3600000}") long statusTtlMillis) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.orderSummaryService = orderSummaryService;
+		this.enabled = enabled;
+		this.batchSize = batchSize;
+		this.maxWaitMillis = maxWaitMillis;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.tickets = new BoundedCache<>(Math.max(queueCapacity * 10, 1000), statusTtlMillis);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+		running = true;
+		writer = new Thread(this::drain, "order-ingestion");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if (writer != null) {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+
+	/**
+	 * Snapshots the cart and queues the order.
+	 *
+	 * @return what was accepted, with its reference, or {@code null} when the queue is full
+	 */
+	public OrderResponse submit(String username, Cart cart) {
+		List<LineItemResponse> lines = new ArrayList<>(cart.getLines().size());
+		int itemCount = 0;
+		for (CartLine line : cart.getLines()) {
+			lines.add(new LineItemResponse(line.getItemId(), line.getItem().getName(),
+					line.getUnitPriceAmount(), line.getQuantity()));
+			itemCount += line.getQuantity();
+		}
+		Money total = cart.getTotalAmount();
+		PendingOrder order = new PendingOrder(UUID.randomUUID().toString(), username, cart.getUser().getId(),
+				total, itemCount, lines);
+		tickets.put(order.reference, order);
+		if (!queue.offer(order)) {
+			tickets.invalidate(order.reference);
+			rejected.increment();
+			return null;
+		}
+		accepted.increment();
+		maxQueueDepth.accumulate(queue.size());
+		return new OrderResponse(null, order.reference, total == null ? null : total.toBigDecimal(),
+				itemCount, lines);
+	}
+
+	/**
+	 * Status of an order accepted by this instance, or {@code null} if the reference is
+	 * unknown here (for example after a restart or once the status TTL has passed).
+	 */
+	public OrderStatusResponse status(String reference) {
+		PendingOrder order = tickets.get(reference);
+		return order == null ? null : new OrderStatusResponse(reference, order.status, order.orderId);
+	}
+
+	/**
+	 * Owner of a queued order, for authorising status lookups.
+	 */
+	public String ownerOf(String reference) {
+		PendingOrder order = tickets.get(reference);
+		return order == null ? null : order.username;
+	}
+
+	private void drain() {
+		List<PendingOrder> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingOrder first = queue.poll(maxWaitMillis, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				write(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				log.error("Order writer failed", e);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(List<PendingOrder> batch) {
+		try {
+			insertAndMark(batch);
+		} catch (RuntimeException e) {
+			// one bad order (say, a user deleted meanwhile) must not sink the rest of the batch
+			log.warn("Batch of " + batch.size() + " orders failed, writing them one at a time", e);
+			for (PendingOrder order : batch) {
+				try {
+					insertAndMark(Collections.singletonList(order));
+				} catch (RuntimeException single) {
+					log.error("Order " + order.reference + " failed", single);
+					order.status = OrderStatusResponse.Status.FAILED;
+					failed.increment();
+				}
+			}
+		}
+		long now = System.nanoTime();
+		int written = 0;
+		for (PendingOrder order : batch) {
+			if (order.status == OrderStatusResponse.Status.PERSISTED) {
+				written++;
+				long latency = now - order.enqueuedNanos;
+				latencyNanosTotal.add(latency);
+				maxLatencyNanos.accumulate(latency);
+			}
+		}
+		persisted.add(written);
+		batches.increment();
+		lastBatchSize = batch.size();
+		maxBatchSize.accumulate(batch.size());
+	}
+
+	private void insertAndMark(List<PendingOrder> orders) {
+		Map<String, Long> ids = transactionTemplate.execute(status -> insert(orders));
+		for (PendingOrder order : orders) {
+			order.orderId = ids.get(order.reference);
+			order.status = OrderStatusResponse.Status.PERSISTED;
+		}
+	}
+
+	/**
+	 * Inserts the orders, reads back their generated ids by reference and inserts the order
+	 * lines, all as JDBC batches, then adds the orders to their users' summaries.
+	 *
+	 * @return order ids by reference
+	 */
+	private Map<String, Long> insert(List<PendingOrder> orders) {
+		List<Object[]> orderRows = new ArrayList<>(orders.size());
+		for (PendingOrder order : orders) {
+			orderRows.add(new Object[] {order.reference, order.total == null ? null : order.total.toBigDecimal(),
+					order.itemCount, order.userId, order.createdAt});
+		}
+		jdbcTemplate.batchUpdate("insert into user_order (reference, total, item_count, user_id, created_at) "
+				+ "values (?, ?, ?, ?, ?)", orderRows);
+
+		Map<String, Long> ids = new HashMap<>();
+		namedJdbcTemplate.query("select id, reference from user_order where reference in (:references)",
+				new MapSqlParameterSource("references",
+						orders.stream().map(order -> order.reference).collect(Collectors.toList())),
+				rs -> {
+					ids.put(rs.getString("reference"), rs.getLong("id"));
+				});
+
+		List<Object[]> lineRows = new ArrayList<>();
+		for (PendingOrder order : orders) {
+			Long orderId = ids.get(order.reference);
+			int lineNumber = 0;
+			for (LineItemResponse line : order.lines) {
+				lineRows.add(new Object[] {orderId, ++lineNumber, line.getItemId(), line.getName(),
+						line.getUnitPrice(), line.getQuantity()});
+			}
+		}
+		jdbcTemplate.batchUpdate("insert into order_line (order_id, line_number, item_id, name, unit_price, quantity) "
+				+ "values (?, ?, ?, ?, ?, ?)", lineRows);
+
+		Map<Long, List<PendingOrder>> byUser = orders.stream()
+				.collect(Collectors.groupingBy(order -> order.userId, LinkedHashMap::new, Collectors.toList()));
+		for (Map.Entry<Long, List<PendingOrder>> entry : byUser.entrySet()) {
+			Money spend = Money.ZERO;
+			long lastOrderAt = 0;
+			for (PendingOrder order : entry.getValue()) {
+				spend = order.total == null ? spend : spend.plus(order.total);
+				lastOrderAt = Math.max(lastOrderAt, order.createdAt);
+			}
+			orderSummaryService.record(entry.getKey(), entry.getValue().size(), spend, lastOrderAt);
+		}
+		return ids;
+	}
+
+	@Override
+	public String getStatsName() {
+		return "orderIngestion";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		long persistedCount = persisted.sum();
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled ? 1 : 0);
+		stats.put("queueDepth", queue.size());
+		stats.put("maxQueueDepth", maxQueueDepth.get());
+		stats.put("accepted", accepted.sum());
+		stats.put("rejected", rejected.sum());
+		stats.put("persisted", persistedCount);
+		stats.put("failed", failed.sum());
+		stats.put("batches", batches.sum());
+		stats.put("lastBatchSize", lastBatchSize);
+		stats.put("maxBatchSize", maxBatchSize.get());
+		stats.put("avgLatencyMs", persistedCount == 0 ? 0d
+				: latencyNanosTotal.sum() / (double) persistedCount / TimeUnit.MILLISECONDS.toNanos(1));
+		stats.put("maxLatencyMs", TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+		return stats;
+	}
+
+	private static final class PendingOrder {
+
+		private final String reference;
+
+		private final String username;
+
+		private final long userId;
+
+		private final Money total;
+
+		private final int itemCount;
+
+		private final List<LineItemResponse> lines;
+
+		private final long enqueuedNanos = System.nanoTime();
+
+		private final long createdAt = System.currentTimeMillis();
+
+		private volatile OrderStatusResponse.Status status = OrderStatusResponse.Status.QUEUED;
+
+		private volatile Long orderId;
+
+		PendingOrder(String reference, String username, long userId, Money total, int itemCount,
+				List<LineItemResponse> lines) {
+			this.reference = reference;
+			this.username = username;
+			this.userId = userId;
+			this.total = total;
+			this.itemCount = itemCount;
+			this.lines = lines;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.demo.order;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the {@code user_order_summary} read model in step with {@code user_order}. Every
+ * order adds to its user's row in the transaction that inserts the order, so the two
+ * never disagree; {@link #rebuild()} recomputes the rows from the order history.
+ */
+@Service
+@Log4j
+public class OrderSummaryService implements StatsSource {
+
+	private static final String INCREMENT = "update user_order_summary set order_count = order_count + ?, "
+			+ "total_spend = total_spend + ?, last_order_at = greatest(coalesce(last_order_at, 0), ?) "
+			+ "where user_id = ?";
+
+	private static final String INSERT = "insert into user_order_summary "
+			+ "(user_id, order_count, total_spend, last_order_at) values (?, ?, ?, ?)";
+
+	private final OrderRepository orderRepository;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final TransactionTemplate savepointTemplate;
+
+	private final int rebuildBatchSize;
+
+	private final LongAdder recorded = new LongAdder();
+
+	private final LongAdder rebuilds = new LongAdder();
+
+	private volatile long lastRebuildMillis;
+
+	private volatile long lastRebuildUsers;
+
+	public OrderSummaryService(OrderRepository orderRepository, JdbcTemplate jdbcTemplate,
+			PlatformTransactionManager transactionManager,
+			@Value("${order.summary.rebuild-batch-size:1000}") int rebuildBatchSize) {
+		this.orderRepository = orderRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.savepointTemplate = new TransactionTemplate(transactionManager);
+		this.savepointTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+		this.rebuildBatchSize = rebuildBatchSize;
+	}
+
+	/**
+	 * Inserts the order and adds it to its user's summary in one transaction.
+	 */
+	public UserOrder save(UserOrder order) {
+		return transactionTemplate.execute(status -> {
+			UserOrder saved = orderRepository.save(order);
+			record(order.getUser().getId(), 1, Money.of(order.getTotal()), order.getCreatedAt());
+			return saved;
+		});
+	}
+
+	/**
+	 * Adds orders to a user's summary. Must run inside the transaction that inserts them.
+	 */
+	public void record(long userId, int orders, Money spend, Long lastOrderAt) {
+		BigDecimal amount = (spend == null ? Money.ZERO : spend).toBigDecimal();
+		long at = lastOrderAt == null ? 0L : lastOrderAt;
+		if (jdbcTemplate.update(INCREMENT, orders, amount, at, userId) == 0) {
+			try {
+				// under a savepoint, so losing the race rolls back the insert alone; databases
+				// such as PostgreSQL otherwise abort the whole transaction, order included
+				savepointTemplate.execute(status -> jdbcTemplate.update(INSERT, userId, orders, amount, lastOrderAt));
+			} catch (DuplicateKeyException e) {
+				// another transaction created the row first
+				jdbcTemplate.update(INCREMENT, orders, amount, at, userId);
+			}
+		}
+		recorded.add(orders);
+	}
+
+	/**
+	 * Recomputes every summary from {@code user_order}, walking users in id order a batch
+	 * at a time. Each batch replaces the summaries of its id range in its own transaction,
+	 * so readers never see a half-empty table. Orders placed while a batch runs may be
+	 * counted twice or not at all; run it when order traffic is quiet.
+	 *
+	 * @return the number of users with orders
+	 */
+	public long rebuild() {
+		long started = System.currentTimeMillis();
+		long users = 0;
+		long lastUserId = 0;
+		while (true) {
+			long after = lastUserId;
+			List<Object[]> rows = transactionTemplate.execute(status -> rebuildBatch(after));
+			if (rows.isEmpty()) {
+				break;
+			}
+			users += rows.size();
+			lastUserId = (Long) rows.get(rows.size() - 1)[0];
+			if (rows.size() < rebuildBatchSize) {
+				break;
+			}
+		}
+		long last = lastUserId;
+		transactionTemplate.execute(status -> jdbcTemplate.update("delete from user_order_summary where user_id > ?", last));
+		rebuilds.increment();
+		lastRebuildUsers = users;
+		lastRebuildMillis = System.currentTimeMillis() - started;
+		log.info("Rebuilt order summaries for " + users + " users in " + lastRebuildMillis + " ms");
+		return users;
+	}
+
+	private List<Object[]> rebuildBatch(long afterUserId) {
+		List<Object[]> rows = new ArrayList<>(rebuildBatchSize);
+		jdbcTemplate.query("select user_id, count(*), coalesce(sum(total), 0), max(created_at) from user_order "
+				+ "where user_id > ? group by user_id order by user_id limit ?",
+				rs -> {
+					Long lastOrderAt = rs.getLong(4);
+					rows.add(new Object[] {rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3),
+							rs.wasNull() ? null : lastOrderAt});
+				}, afterUserId, rebuildBatchSize);
+		if (rows.isEmpty()) {
+			return rows;
+		}
+		long lastUserId = (Long) rows.get(rows.size() - 1)[0];
+		jdbcTemplate.update("delete from user_order_summary where user_id > ? and user_id <= ?", afterUserId, lastUserId);
+		jdbcTemplate.batchUpdate(INSERT, rows);
+		return rows;
+	}
+
+	@Override
+	public String getStatsName() {
+		return "orderSummary";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("ordersRecorded", recorded.sum());
+		stats.put("rebuilds", rebuilds.sum());
+		stats.put("lastRebuildUsers", lastRebuildUsers);
+		stats.put("lastRebuildMs", lastRebuildMillis);
+		return stats;
+	}
+}
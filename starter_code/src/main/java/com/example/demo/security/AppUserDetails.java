@@ -0,0 +1,35 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+
+/**
+ * {@link User} that also remembers the ids minted into the access token's claims.
+ */
+public class AppUserDetails extends User {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long userId;
+
+	private final Long cartId;
+
+	public AppUserDetails(com.example.demo.model.persistence.User user) {
+		super(user.getUsername(), user.getPassword(), Collections.emptyList());
+		this.userId = user.getId();
+		this.cartId = user.getCart() == null ? null : user.getCart().getId();
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public Long getCartId() {
+		return cartId;
+	}
+
+	public TokenPrincipal toTokenPrincipal() {
+		return new TokenPrincipal(getUsername(), userId, cartId);
+	}
+}
@@ -0,0 +1,57 @@
+package com.example.demo.security;
+
+import lombok.extern.log4j.Log4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects login and signup requests with 429 once the client IP is over its limit,
+ * before the request body is read or any password is hashed.
+ */
+@Log4j
+public class AuthenticationRateLimitFilter extends OncePerRequestFilter {
+
+	private static final RequestMatcher LOGIN = new AntPathRequestMatcher("/login", HttpMethod.POST.name());
+
+	private static final RequestMatcher SIGN_UP = new AntPathRequestMatcher(SecurityConstants.SIGN_UP_URL,
+			HttpMethod.POST.name());
+
+	private final AuthenticationRateLimiter rateLimiter;
+
+	public AuthenticationRateLimitFilter(AuthenticationRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+			throws ServletException, IOException {
+		long wait = 0;
+		if (LOGIN.matches(req)) {
+			wait = rateLimiter.tryLoginFromIp(req.getRemoteAddr());
+		} else if (SIGN_UP.matches(req)) {
+			wait = rateLimiter.trySignupFromIp(req.getRemoteAddr());
+		}
+		if (wait > 0) {
+			log.info("Too many authentication attempts from " + req.getRemoteAddr());
+			rejectTooManyRequests(res, wait);
+			return;
+		}
+		chain.doFilter(req, res);
+	}
+
+	static void rejectTooManyRequests(HttpServletResponse res, long waitNanos) {
+		res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1)));
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.demo.security;
+
+import com.example.demo.stats.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Throttles login and signup attempts per client IP and login attempts per username,
+ * so floods are turned away before any BCrypt work is done.
+ */
+@Component
+public class AuthenticationRateLimiter implements StatsSource {
+
+	private final TokenBucketRateLimiter loginByIp;
+
+	private final TokenBucketRateLimiter loginByUsername;
+
+	private final TokenBucketRateLimiter signupByIp;
+
+	public AuthenticationRateLimiter(
+			@Value("${security.rate-limit.login-ip.capacity:20}") int loginIpCapacity,
+			@Value("${security.rate-limit.login-ip.per-minute:20}") int loginIpPerMinute,
+			@Value("${security.rate-limit.login-username.capacity:5}") int loginUsernameCapacity,
+			@Value("${security.rate-limit.login-username.per-minute:5}") int loginUsernamePerMinute,
+			@Value("${security.rate-limit.signup-ip.capacity:5}") int signupIpCapacity,
+			@Value("${security.rate-limit.signup-ip.per-minute:10}") int signupIpPerMinute,
+			@Value("${security.rate-limit.maximum-keys:100000}") int maximumKeys) {
+		this.loginByIp = new TokenBucketRateLimiter(loginIpCapacity, loginIpPerMinute, maximumKeys);
+		this.loginByUsername = new TokenBucketRateLimiter(loginUsernameCapacity, loginUsernamePerMinute, maximumKeys);
+		this.signupByIp = new TokenBucketRateLimiter(signupIpCapacity, signupIpPerMinute, maximumKeys);
+	}
+
+	/**
+	 * @return {@code 0} when permitted, otherwise the nanoseconds until the next attempt is allowed
+	 */
+	public long tryLoginFromIp(String ip) {
+		return loginByIp.tryAcquire(ip);
+	}
+
+	public long tryLoginAsUser(String username) {
+		return loginByUsername.tryAcquire(username == null ? "" : username.toLowerCase(Locale.ROOT));
+	}
+
+	public long trySignupFromIp(String ip) {
+		return signupByIp.tryAcquire(ip);
+	}
+
+	@Scheduled(fixedDelayString = "${security.rate-limit.eviction-interval-ms:60000}")
+	public void evictIdleBuckets() {
+		loginByIp.evictIdle();
+		loginByUsername.evictIdle();
+		signupByIp.evictIdle();
+	}
+
+	@Override
+	public String getStatsName() {
+		return "authenticationRateLimiter";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		putStats(stats, "loginByIp", loginByIp);
+		putStats(stats, "loginByUsername", loginByUsername);
+		putStats(stats, "signupByIp", signupByIp);
+		return stats;
+	}
+
+	private static void putStats(Map<String, Number> stats, String prefix, TokenBucketRateLimiter limiter) {
+		stats.put(prefix + ".buckets", limiter.size());
+		stats.put(prefix + ".permitted", limiter.getPermittedCount());
+		stats.put(prefix + ".rejected", limiter.getRejectedCount());
+		stats.put(prefix + ".untracked", limiter.getUntrackedCount());
+	}
+}
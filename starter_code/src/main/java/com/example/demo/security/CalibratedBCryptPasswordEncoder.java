@@ -0,0 +1,75 @@
+package com.example.demo.security;
+
+import lombok.extern.log4j.Log4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * {@link BCryptPasswordEncoder} whose work factor was picked at startup by timing
+ * hashes on the current hardware, see {@link #calibrate(long, int, int)}.
+ */
+@Log4j
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+	private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+	private static final int SAMPLES = 3;
+
+	private final int strength;
+
+	public CalibratedBCryptPasswordEncoder(int strength) {
+		super(strength);
+		this.strength = strength;
+	}
+
+	public int getStrength() {
+		return strength;
+	}
+
+	/**
+	 * Returns an encoder with the highest strength in {@code [minStrength, maxStrength]}
+	 * whose hashes take no longer than {@code targetMillis}. Each extra round doubles
+	 * the cost, so only the minimum strength is measured and the rest extrapolated.
+	 */
+	public static CalibratedBCryptPasswordEncoder calibrate(long targetMillis, int minStrength, int maxStrength) {
+		if (minStrength > maxStrength) {
+			throw new IllegalArgumentException("minStrength must not exceed maxStrength");
+		}
+		BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+		probe.encode(CALIBRATION_PASSWORD);
+
+		long nanos = Long.MAX_VALUE;
+		for (int i = 0; i < SAMPLES; i++) {
+			long start = System.nanoTime();
+			probe.encode(CALIBRATION_PASSWORD);
+			nanos = Math.min(nanos, System.nanoTime() - start);
+		}
+
+		long targetNanos = targetMillis * 1_000_000L;
+		int strength = minStrength;
+		while (strength < maxStrength && nanos * 2 <= targetNanos) {
+			strength++;
+			nanos *= 2;
+		}
+		log.info("BCrypt strength " + strength + " selected (~" + nanos / 1_000_000 + " ms per hash, target "
+				+ targetMillis + " ms)");
+		return new CalibratedBCryptPasswordEncoder(strength);
+	}
+
+	/**
+	 * Reads the work factor from a BCrypt hash such as {@code $2a$10$...}.
+	 *
+	 * @return the strength, or {@code -1} when the value is not a BCrypt hash
+	 */
+	public static int strengthOf(String encodedPassword) {
+		if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$'
+				|| encodedPassword.charAt(3) != '$' || encodedPassword.charAt(6) != '$') {
+			return -1;
+		}
+		char tens = encodedPassword.charAt(4);
+		char units = encodedPassword.charAt(5);
+		if (!Character.isDigit(tens) || !Character.isDigit(units)) {
+			return -1;
+		}
+		return (tens - '0') * 10 + (units - '0');
+	}
+}
@@ -1,47 +1,109 @@
 package com.example.demo.security;
 
-import com.auth0.jwt.JWT;
 import com.example.demo.model.persistence.User;
+import com.example.demo.model.responses.TokenResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+@Log4j
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
     private AuthenticationManager authenticationManager;
 
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+    private PasswordHashingService passwordHashingService;
+
+    private PasswordUpgradeService passwordUpgradeService;
+
+    private TokenService tokenService;
+
+    private AuthenticationRateLimiter rateLimiter;
+
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager,
+                                   PasswordHashingService passwordHashingService,
+                                   PasswordUpgradeService passwordUpgradeService,
+                                   TokenService tokenService,
+                                   AuthenticationRateLimiter rateLimiter) {
         this.authenticationManager = authenticationManager;
+        this.passwordHashingService = passwordHashingService;
+        this.passwordUpgradeService = passwordUpgradeService;
+        this.tokenService = tokenService;
+        this.rateLimiter = rateLimiter;
     }
     
+    /**
+     * Authenticates on the password hashing pool and completes the request asynchronously,
+     * so the servlet thread is released while BCrypt runs. Always returns {@code null}
+     * to tell the parent filter that the response is being handled elsewhere.
+     */
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
+    	User credentials;
     	try {
-    		User credentials = new ObjectMapper()
+    		credentials = new ObjectMapper()
                     .readValue(req.getInputStream(), User.class);
-    		
-    		return authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            credentials.getUsername(),
-                            credentials.getPassword(),
-                            new ArrayList<>()));
     	} catch (IOException e) {
     		throw new RuntimeException(e);
     	}
+
+    	long wait = rateLimiter.tryLoginAsUser(credentials.getUsername());
+    	if (wait > 0) {
+    		log.info("Too many login attempts for " + credentials.getUsername());
+    		AuthenticationRateLimitFilter.rejectTooManyRequests(res, wait);
+    		return null;
+    	}
+
+    	UsernamePasswordAuthenticationToken authRequest = new UsernamePasswordAuthenticationToken(
+                credentials.getUsername(),
+                credentials.getPassword(),
+                new ArrayList<>());
+
+    	AsyncContext asyncContext = req.startAsync(req, res);
+    	try {
+    		passwordHashingService.submit(() -> authenticate(authRequest))
+                    .whenComplete((auth, failure) -> {
+                        try {
+                            if (failure == null) {
+                                writeToken(res, auth);
+                            } else {
+                                writeFailure(res, failure);
+                            }
+                        } finally {
+                            asyncContext.complete();
+                        }
+                    });
+    	} catch (RejectedExecutionException e) {
+    		log.info("Password hashing queue is full, rejecting login");
+    		res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    		res.setHeader("Retry-After", "1");
+    		asyncContext.complete();
+    	}
+    	return null;
+    }
+    
+    private Authentication authenticate(UsernamePasswordAuthenticationToken authRequest) {
+        Authentication auth = authenticationManager.authenticate(authRequest);
+        // credentials are not erased (see WebSecurityConfiguration), so the principal still holds the stored hash
+        org.springframework.security.core.userdetails.User principal =
+                (org.springframework.security.core.userdetails.User) auth.getPrincipal();
+        passwordUpgradeService.rehashIfNeeded(principal.getUsername(),
+                authRequest.getCredentials().toString(), principal.getPassword());
+        return auth;
     }
     
     @Override
@@ -49,11 +111,24 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             HttpServletResponse res,
                                             FilterChain chain,
                                             Authentication auth) throws IOException, ServletException {
+        writeToken(res, auth);
+    }
+
+    private void writeToken(HttpServletResponse res, Authentication auth) {
+        TokenResponse tokens = tokenService.issueTokens(((AppUserDetails) auth.getPrincipal()).toTokenPrincipal());
+        res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + tokens.getAccessToken());
+        res.addHeader(SecurityConstants.REFRESH_HEADER_STRING, tokens.getRefreshToken());
+    }
 
-        String token = JWT.create()
-                .withSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
-                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
-        res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
+    private void writeFailure(HttpServletResponse res, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof AuthenticationException) {
+            log.info("Login failed: " + cause.getMessage());
+            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        } else {
+            log.error("Login could not be processed", cause);
+            res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
     }
 }
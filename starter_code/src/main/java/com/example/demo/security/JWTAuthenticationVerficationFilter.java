@@ -1,6 +1,5 @@
 package com.example.demo.security;
 
-import com.auth0.jwt.JWT;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,15 +11,19 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
 
 @Component
 public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilter {
+
+	private final VerifiedTokenCache verifiedTokenCache;
+
+	private final TokenRevocationService tokenRevocationService;
 	
-	public JWTAuthenticationVerficationFilter(AuthenticationManager authManager) {
+	public JWTAuthenticationVerficationFilter(AuthenticationManager authManager, VerifiedTokenCache verifiedTokenCache,
+			TokenRevocationService tokenRevocationService) {
         super(authManager);
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 	
 	@Override
@@ -42,13 +45,11 @@ public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilte
 	private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest req) {
 		String token = req.getHeader(SecurityConstants.HEADER_STRING);
         if (token != null) {
-            String user = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
-                    .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                    .getSubject();
-            if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+            VerifiedToken verified = verifiedTokenCache.verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""));
+            if (verified == null || tokenRevocationService.isRevoked(verified.getJti())) {
+                return null;
             }
-            return null;
+            return verified.getAuthentication();
         }
         return null;
 	}
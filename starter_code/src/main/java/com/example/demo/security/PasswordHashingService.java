@@ -0,0 +1,123 @@
+package com.example.demo.security;
+
+import com.example.demo.stats.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and matching on a dedicated, fixed-size pool with a bounded
+ * queue, so signup and login bursts cannot take over the servlet worker threads.
+ * When the queue is full, work is refused with a {@link RejectedExecutionException}
+ * that callers turn into a fast 503 response.
+ */
+@Service
+public class PasswordHashingService implements StatsSource {
+
+	private final BCryptPasswordEncoder bCryptPasswordEncoder;
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder completed = new LongAdder();
+
+	private final LongAdder totalHashNanos = new LongAdder();
+
+	private final AtomicLong maxHashNanos = new AtomicLong();
+
+	public PasswordHashingService(BCryptPasswordEncoder bCryptPasswordEncoder,
+			@Value("${security.password-hashing.threads:0}") int threads,
+			@Value("${security.password-hashing.queue-capacity:64}") int queueCapacity) {
+		this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public CompletableFuture<String> encode(CharSequence rawPassword) {
+		return submit(() -> bCryptPasswordEncoder.encode(rawPassword));
+	}
+
+	public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+		return submit(() -> bCryptPasswordEncoder.matches(rawPassword, encodedPassword));
+	}
+
+	/**
+	 * Runs a task that performs password hashing on the hashing pool.
+	 *
+	 * @throws RejectedExecutionException when the pool's queue is full
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		try {
+			return CompletableFuture.supplyAsync(() -> timed(task), executor);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	private <T> T timed(Supplier<T> task) {
+		long start = System.nanoTime();
+		try {
+			return task.get();
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			completed.increment();
+			totalHashNanos.add(elapsed);
+			maxHashNanos.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public String getStatsName() {
+		return "passwordHashing";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		long count = completed.sum();
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("poolSize", executor.getPoolSize());
+		stats.put("active", executor.getActiveCount());
+		stats.put("queueDepth", executor.getQueue().size());
+		stats.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+		stats.put("completed", count);
+		stats.put("rejected", rejected.sum());
+		stats.put("avgLatencyMs", count == 0 ? 0d : totalHashNanos.sum() / (double) count / 1_000_000d);
+		stats.put("maxLatencyMs", maxHashNanos.get() / 1_000_000d);
+		return stats;
+	}
+
+	private static final class HashingThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger sequence = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "password-hashing-" + sequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
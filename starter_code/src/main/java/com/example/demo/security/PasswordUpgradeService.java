@@ -0,0 +1,103 @@
+package com.example.demo.security;
+
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rehashes stored passwords whose BCrypt cost differs from the calibrated strength.
+ * Rehashing happens in the background after a successful login, when the raw
+ * password is known, so the work factor can change per deployment without a bulk
+ * migration. When the hashing pool is busy the upgrade is skipped and retried on
+ * a later login.
+ */
+@Service
+@Log4j
+public class PasswordUpgradeService implements StatsSource {
+
+	private final UserRepository userRepository;
+
+	private final CalibratedBCryptPasswordEncoder bCryptPasswordEncoder;
+
+	private final PasswordHashingService passwordHashingService;
+
+	private final UserDetailsServiceImpl userDetailsService;
+
+	private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+	private final LongAdder upgraded = new LongAdder();
+
+	private final LongAdder skipped = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	public PasswordUpgradeService(UserRepository userRepository,
+			CalibratedBCryptPasswordEncoder bCryptPasswordEncoder,
+			PasswordHashingService passwordHashingService,
+			UserDetailsServiceImpl userDetailsService) {
+		this.userRepository = userRepository;
+		this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+		this.passwordHashingService = passwordHashingService;
+		this.userDetailsService = userDetailsService;
+	}
+
+	public boolean needsUpgrade(String encodedPassword) {
+		int strength = CalibratedBCryptPasswordEncoder.strengthOf(encodedPassword);
+		return strength > 0 && strength != bCryptPasswordEncoder.getStrength();
+	}
+
+	/**
+	 * Schedules a rehash of {@code rawPassword} when {@code encodedPassword} uses another
+	 * cost. Must only be called once the raw password was verified against the hash.
+	 */
+	public void rehashIfNeeded(String username, CharSequence rawPassword, String encodedPassword) {
+		if (!needsUpgrade(encodedPassword) || !inProgress.add(username)) {
+			return;
+		}
+		try {
+			passwordHashingService.encode(rawPassword.toString())
+					.whenComplete((newPassword, failure) -> {
+						try {
+							if (failure == null) {
+								// only replaces the hash that was verified, a concurrent password change wins
+								if (userRepository.updatePassword(username, encodedPassword, newPassword) > 0) {
+									userDetailsService.invalidate(username);
+									upgraded.increment();
+								}
+							} else {
+								failed.increment();
+								log.warn("Password rehash failed for " + username, failure);
+							}
+						} finally {
+							inProgress.remove(username);
+						}
+					});
+		} catch (RejectedExecutionException e) {
+			inProgress.remove(username);
+			skipped.increment();
+		}
+	}
+
+	@Override
+	public String getStatsName() {
+		return "passwordUpgrade";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("strength", bCryptPasswordEncoder.getStrength());
+		stats.put("upgraded", upgraded.sum());
+		stats.put("skipped", skipped.sum());
+		stats.put("failed", failed.sum());
+		return stats;
+	}
+}
@@ -3,8 +3,13 @@ package com.example.demo.security;
 public class SecurityConstants {
 
 	public static final String SECRET = "oursecretkey";
-    public static final long EXPIRATION_TIME = 864_000_000; // 10 days
+    public static final long EXPIRATION_TIME = 900_000; // 15 minutes, renewed with the refresh token
+    public static final long REFRESH_EXPIRATION_TIME = 864_000_000; // 10 days
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String HEADER_STRING = "Authorization";
+    public static final String REFRESH_HEADER_STRING = "Refresh-Token";
     public static final String SIGN_UP_URL = "/api/user/create";
+    public static final String REFRESH_URL = "/api/user/token/refresh";
+    public static final String ADMIN_URLS = "/api/admin/**";
+    public static final String ADMIN_ROLE = "ADMIN";
 }
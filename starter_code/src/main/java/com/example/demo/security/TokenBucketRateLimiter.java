@@ -0,0 +1,117 @@
+package com.example.demo.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token buckets, one per key.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding its "theoretical arrival time"
+ * (the generic cell rate algorithm): a permit is granted when that time is no more
+ * than {@code capacity - 1} refill intervals ahead of now, and granting it moves the
+ * time one interval forward with a CAS. A bucket whose time has fallen behind the
+ * clock is full again and can be evicted without losing information.
+ */
+public class TokenBucketRateLimiter {
+
+	private final long refillIntervalNanos;
+
+	private final long burstToleranceNanos;
+
+	private final int maximumKeys;
+
+	private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+	private final LongAdder permitted = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder untracked = new LongAdder();
+
+	/**
+	 * @param capacity      permits available in a burst
+	 * @param permitsPerMinute sustained refill rate
+	 * @param maximumKeys   number of buckets kept before new keys go untracked
+	 */
+	public TokenBucketRateLimiter(int capacity, int permitsPerMinute, int maximumKeys) {
+		if (capacity <= 0 || permitsPerMinute <= 0) {
+			throw new IllegalArgumentException("capacity and permitsPerMinute must be positive");
+		}
+		this.refillIntervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+		this.burstToleranceNanos = refillIntervalNanos * (capacity - 1);
+		this.maximumKeys = maximumKeys;
+	}
+
+	/**
+	 * Takes one permit for the key.
+	 *
+	 * @return {@code 0} when permitted, otherwise the nanoseconds until the next permit
+	 */
+	public long tryAcquire(String key) {
+		long now = System.nanoTime();
+		AtomicLong bucket = buckets.get(key);
+		if (bucket == null) {
+			if (buckets.size() >= maximumKeys) {
+				evictIdle();
+				if (buckets.size() >= maximumKeys) {
+					// a flood of distinct keys must not exhaust memory; other limits still apply
+					untracked.increment();
+					return 0;
+				}
+			}
+			AtomicLong created = new AtomicLong(now);
+			bucket = buckets.putIfAbsent(key, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		for (;;) {
+			long arrival = bucket.get();
+			long wait = arrival - burstToleranceNanos - now;
+			if (wait > 0) {
+				rejected.increment();
+				return wait;
+			}
+			if (bucket.compareAndSet(arrival, Math.max(arrival, now) + refillIntervalNanos)) {
+				permitted.increment();
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Removes buckets that have refilled completely.
+	 */
+	public int evictIdle() {
+		long now = System.nanoTime();
+		int evicted = 0;
+		Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().get() - now <= 0) {
+				it.remove();
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	public int size() {
+		return buckets.size();
+	}
+
+	public long getPermittedCount() {
+		return permitted.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	public long getUntrackedCount() {
+		return untracked.sum();
+	}
+}
@@ -0,0 +1,74 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.Serializable;
+import java.security.Principal;
+
+/**
+ * The authenticated caller as described by the access token's claims. Carrying the
+ * user and cart ids lets controllers address rows by primary key instead of looking
+ * the user up by name.
+ */
+public class TokenPrincipal implements Principal, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String USER_ID_CLAIM = "uid";
+
+	static final String CART_ID_CLAIM = "cid";
+
+	private final String username;
+
+	private final Long userId;
+
+	private final Long cartId;
+
+	public TokenPrincipal(String username, Long userId, Long cartId) {
+		this.username = username;
+		this.userId = userId;
+		this.cartId = cartId;
+	}
+
+	/**
+	 * Returns the authenticated principal when it belongs to {@code username}, otherwise
+	 * {@code null}, so callers fall back to a lookup by name.
+	 */
+	public static TokenPrincipal currentFor(String username) {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null || !(authentication.getPrincipal() instanceof TokenPrincipal)) {
+			return null;
+		}
+		TokenPrincipal principal = (TokenPrincipal) authentication.getPrincipal();
+		return principal.username.equals(username) ? principal : null;
+	}
+
+	@Override
+	public String getName() {
+		return username;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * The user id, or {@code null} for tokens issued without the claim.
+	 */
+	public Long getUserId() {
+		return userId;
+	}
+
+	/**
+	 * The cart id, or {@code null} for tokens issued without the claim.
+	 */
+	public Long getCartId() {
+		return cartId;
+	}
+
+	@Override
+	public String toString() {
+		return username;
+	}
+}
@@ -0,0 +1,144 @@
+package com.example.demo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.RevokedToken;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+import com.example.demo.stats.StatsSource;
+import lombok.extern.log4j.Log4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of revoked access tokens by their {@code jti} until they expire.
+ * <p>
+ * The {@code revoked_token} table is authoritative. An in-memory Bloom filter of
+ * revoked ids sits in front of it, so the common case of an unrevoked token is
+ * answered without a database lookup; only possible hits are confirmed against the
+ * table, and those answers are cached briefly. Revocations made by other instances
+ * become visible here with the next scheduled rebuild.
+ */
+@Service
+@Log4j
+public class TokenRevocationService implements StatsSource {
+
+	private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+	private final RevokedTokenRepository revokedTokenRepository;
+
+	private final VerifiedTokenCache verifiedTokenCache;
+
+	private final int expectedRevocations;
+
+	private final BoundedCache<String, Boolean> confirmed;
+
+	private volatile BloomFilter bloomFilter;
+
+	private final LongAdder fastPathChecks = new LongAdder();
+
+	private final LongAdder storeLookups = new LongAdder();
+
+	private final LongAdder revokedHits = new LongAdder();
+
+	public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+			VerifiedTokenCache verifiedTokenCache,
+			@Value("${security.revocation.expected-revocations:100000}") int expectedRevocations) {
+		this.revokedTokenRepository = revokedTokenRepository;
+		this.verifiedTokenCache = verifiedTokenCache;
+		this.expectedRevocations = expectedRevocations;
+		this.confirmed = new BoundedCache<>(10_000, 60_000);
+		this.bloomFilter = new BloomFilter(expectedRevocations, FALSE_POSITIVE_PROBABILITY);
+	}
+
+	/**
+	 * Revokes an access token until its expiry. Tokens without a {@code jti} cannot be revoked.
+	 *
+	 * @return whether the token was revoked
+	 */
+	public boolean revoke(String token) {
+		DecodedJWT jwt;
+		try {
+			jwt = JWT.decode(token);
+		} catch (JWTDecodeException e) {
+			return false;
+		}
+		String jti = jwt.getId();
+		if (jti == null) {
+			return false;
+		}
+		long expiresAt = jwt.getExpiresAt() == null
+				? System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME
+				: jwt.getExpiresAt().getTime();
+		// serialized with rebuild() so a revocation is never lost from a freshly built filter
+		synchronized (this) {
+			revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+			bloomFilter.put(jti);
+		}
+		confirmed.put(jti, Boolean.TRUE);
+		verifiedTokenCache.invalidate(token);
+		return true;
+	}
+
+	public boolean isRevoked(String jti) {
+		if (jti == null) {
+			return false;
+		}
+		if (!bloomFilter.mightContain(jti)) {
+			fastPathChecks.increment();
+			return false;
+		}
+		Boolean revoked = confirmed.get(jti);
+		if (revoked == null) {
+			storeLookups.increment();
+			revoked = revokedTokenRepository.existsById(jti);
+			confirmed.put(jti, revoked);
+		}
+		if (revoked) {
+			revokedHits.increment();
+		}
+		return revoked;
+	}
+
+	/**
+	 * Drops expired revocations and rebuilds the Bloom filter from the table, which also
+	 * picks up revocations made by other instances.
+	 */
+	@PostConstruct
+	@Scheduled(fixedDelayString = "${security.revocation.rebuild-interval-ms:300000}",
+			initialDelayString = "${security.revocation.rebuild-interval-ms:300000}")
+	public synchronized void rebuild() {
+		long now = System.currentTimeMillis();
+		long purged = revokedTokenRepository.deleteByExpiresAtLessThanEqual(now);
+		BloomFilter rebuilt = new BloomFilter(expectedRevocations, FALSE_POSITIVE_PROBABILITY);
+		for (RevokedToken revokedToken : revokedTokenRepository.findByExpiresAtGreaterThan(now)) {
+			rebuilt.put(revokedToken.getJti());
+		}
+		bloomFilter = rebuilt;
+		confirmed.invalidateAll();
+		if (purged > 0) {
+			log.info("Purged " + purged + " expired token revocations");
+		}
+	}
+
+	@Override
+	public String getStatsName() {
+		return "tokenRevocation";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("fastPathChecks", fastPathChecks.sum());
+		stats.put("storeLookups", storeLookups.sum());
+		stats.put("revokedHits", revokedHits.sum());
+		return stats;
+	}
+}
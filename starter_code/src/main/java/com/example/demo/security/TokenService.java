@@ -0,0 +1,104 @@
+package com.example.demo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.responses.TokenResponse;
+import com.example.demo.stats.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Issues short-lived access JWTs and opaque, rotating refresh tokens.
+ * <p>
+ * Refresh tokens are random values kept server-side (by digest) in memory; each one
+ * can be used once, and exchanging it yields a new access token and a new refresh
+ * token without any password hashing.
+ */
+@Service
+public class TokenService implements StatsSource {
+
+	private static final Algorithm ALGORITHM = HMAC512(SecurityConstants.SECRET.getBytes());
+
+	private static final int REFRESH_TOKEN_BYTES = 32;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final BoundedCache<String, TokenPrincipal> refreshTokens;
+
+	private final LongAdder refreshed = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	public TokenService(@Value("${security.refresh-tokens.maximum-size:100000}") int maximumSize) {
+		this.refreshTokens = new BoundedCache<>(maximumSize, SecurityConstants.REFRESH_EXPIRATION_TIME);
+	}
+
+	public TokenResponse issueTokens(TokenPrincipal principal) {
+		return new TokenResponse(createAccessToken(principal), createRefreshToken(principal),
+				SecurityConstants.EXPIRATION_TIME / 1000);
+	}
+
+	public String createAccessToken(TokenPrincipal principal) {
+		return JWT.create()
+				.withSubject(principal.getUsername())
+				.withClaim(TokenPrincipal.USER_ID_CLAIM, principal.getUserId())
+				.withClaim(TokenPrincipal.CART_ID_CLAIM, principal.getCartId())
+				.withJWTId(UUID.randomUUID().toString())
+				.withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+				.sign(ALGORITHM);
+	}
+
+	public String createRefreshToken(TokenPrincipal principal) {
+		byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+		random.nextBytes(bytes);
+		String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		refreshTokens.put(TokenDigest.sha256(refreshToken), principal);
+		return refreshToken;
+	}
+
+	/**
+	 * Exchanges a refresh token for a new token pair. The presented refresh token is
+	 * consumed, so a second use of the same value fails.
+	 *
+	 * @return the new tokens, or {@code null} when the refresh token is unknown, used or expired
+	 */
+	public TokenResponse refresh(String refreshToken) {
+		TokenPrincipal principal = refreshTokens.remove(TokenDigest.sha256(refreshToken));
+		if (principal == null) {
+			rejected.increment();
+			return null;
+		}
+		refreshed.increment();
+		return issueTokens(principal);
+	}
+
+	public void revokeRefreshToken(String refreshToken) {
+		refreshTokens.invalidate(TokenDigest.sha256(refreshToken));
+	}
+
+	@Override
+	public String getStatsName() {
+		return "refreshTokens";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("active", refreshTokens.size());
+		stats.put("refreshed", refreshed.sum());
+		stats.put("rejected", rejected.sum());
+		stats.put("evictions", refreshTokens.getEvictionCount());
+		return stats;
+	}
+}
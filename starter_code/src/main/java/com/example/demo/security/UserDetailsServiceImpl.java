@@ -1,27 +1,70 @@
 package com.example.demo.security;
 
+import com.example.demo.cache.BoundedCache;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.stats.StatsSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Loads users for login. Found users are cached for a bounded time; callers that change
+ * a user's password or account must call {@link #invalidate(String)}. Cached instances
+ * are shared between logins, which is safe because credentials are not erased after
+ * authentication (see {@link WebSecurityConfiguration}).
+ */
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, StatsSource {
 
 	@Autowired
 	private UserRepository userRepository;
 
+	private final BoundedCache<String, UserDetails> cache;
+
+	public UserDetailsServiceImpl(@Value("${security.user-details-cache.maximum-size:10000}") int maximumSize,
+			@Value("${security.user-details-cache.ttl-ms:600000}") long ttlMillis) {
+		this.cache = new BoundedCache<>(maximumSize, ttlMillis);
+	}
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails cached = cache.get(username);
+        if (cached != null) {
+            return cached;
+        }
         User user = userRepository.findByUsername(username);
         if (user == null) {
             throw new UsernameNotFoundException(username);
         }
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), Collections.emptyList());
+        UserDetails userDetails = new AppUserDetails(user);
+        cache.put(username, userDetails);
+        return userDetails;
     }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+	@Override
+	public String getStatsName() {
+		return "userDetailsCache";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("size", cache.size());
+		stats.put("hits", cache.getHitCount());
+		stats.put("misses", cache.getMissCount());
+		stats.put("evictions", cache.getEvictionCount());
+		stats.put("hitRatio", cache.getHitRatio());
+		return stats;
+	}
 }
@@ -0,0 +1,29 @@
+package com.example.demo.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+/**
+ * Result of a successful bearer token verification, as kept by {@link VerifiedTokenCache}.
+ */
+public class VerifiedToken {
+
+	private final UsernamePasswordAuthenticationToken authentication;
+
+	private final String jti;
+
+	VerifiedToken(UsernamePasswordAuthenticationToken authentication, String jti) {
+		this.authentication = authentication;
+		this.jti = jti;
+	}
+
+	public UsernamePasswordAuthenticationToken getAuthentication() {
+		return authentication;
+	}
+
+	/**
+	 * The token id, or {@code null} for tokens issued without one.
+	 */
+	public String getJti() {
+		return jti;
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.demo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.stats.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Remembers bearer tokens whose signature has already been checked, so repeated
+ * requests with the same token skip the HMAC verification and JWT parsing.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the token (the raw token is never kept)
+ * and expire at the token's own {@code exp} claim, or earlier after the configured TTL.
+ * <p>
+ * Users listed in {@code security.admin-usernames} are granted {@code ROLE_ADMIN}.
+ */
+@Component
+public class VerifiedTokenCache implements StatsSource {
+
+	private static final JWTVerifier VERIFIER = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build();
+
+	private final BoundedCache<String, VerifiedToken> cache;
+
+	private static final List<GrantedAuthority> ADMIN_AUTHORITIES =
+			Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + SecurityConstants.ADMIN_ROLE));
+
+	private final long ttlMillis;
+
+	private final Set<String> adminUsernames;
+
+	public VerifiedTokenCache(@Value("${security.token-cache.maximum-size:10000}") int maximumSize,
+			@Value("${security.token-cache.ttl-ms:300000}") long ttlMillis,
+			@Value("${security.admin-usernames:}") String[] adminUsernames) {
+		this.cache = new BoundedCache<>(maximumSize, ttlMillis);
+		this.ttlMillis = ttlMillis;
+		this.adminUsernames = new HashSet<>(Arrays.asList(adminUsernames));
+	}
+
+	/**
+	 * Returns the verified token, checking its signature only when it is not cached yet.
+	 *
+	 * @return the verified token, or {@code null} when the token has no subject
+	 * @throws JWTVerificationException when the token is invalid or expired
+	 */
+	public VerifiedToken verify(String token) {
+		String key = TokenDigest.sha256(token);
+		VerifiedToken verified = cache.get(key);
+		if (verified != null) {
+			return verified;
+		}
+
+		DecodedJWT jwt = VERIFIER.verify(token);
+		String user = jwt.getSubject();
+		if (user == null) {
+			return null;
+		}
+		TokenPrincipal principal = new TokenPrincipal(user,
+				jwt.getClaim(TokenPrincipal.USER_ID_CLAIM).asLong(),
+				jwt.getClaim(TokenPrincipal.CART_ID_CLAIM).asLong());
+		verified = new VerifiedToken(new UsernamePasswordAuthenticationToken(principal, null,
+				adminUsernames.contains(user) ? ADMIN_AUTHORITIES : Collections.emptyList()),
+				jwt.getId());
+
+		long expiresAt = System.currentTimeMillis() + ttlMillis;
+		if (jwt.getExpiresAt() != null) {
+			expiresAt = Math.min(expiresAt, jwt.getExpiresAt().getTime());
+		}
+		cache.put(key, verified, expiresAt);
+		return verified;
+	}
+
+	public void invalidate(String token) {
+		cache.invalidate(TokenDigest.sha256(token));
+	}
+
+	@Override
+	public String getStatsName() {
+		return "verifiedTokenCache";
+	}
+
+	@Override
+	public Map<String, Number> getStats() {
+		Map<String, Number> stats = new LinkedHashMap<>();
+		stats.put("size", cache.size());
+		stats.put("hits", cache.getHitCount());
+		stats.put("misses", cache.getMissCount());
+		stats.put("evictions", cache.getEvictionCount());
+		stats.put("hitRatio", cache.getHitRatio());
+		return stats;
+	}
+}
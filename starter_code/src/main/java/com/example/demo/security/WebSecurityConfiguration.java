@@ -4,32 +4,56 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @EnableWebSecurity
+@EnableGlobalMethodSecurity(prePostEnabled = true)
 public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 	
 	private UserDetailsServiceImpl userDetailsService;
     private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private VerifiedTokenCache verifiedTokenCache;
+    private PasswordHashingService passwordHashingService;
+    private PasswordUpgradeService passwordUpgradeService;
+    private TokenService tokenService;
+    private AuthenticationRateLimiter rateLimiter;
+    private TokenRevocationService tokenRevocationService;
 	
     public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService,
-			BCryptPasswordEncoder bCryptPasswordEncoder) {
+			BCryptPasswordEncoder bCryptPasswordEncoder,
+			VerifiedTokenCache verifiedTokenCache,
+			PasswordHashingService passwordHashingService,
+			PasswordUpgradeService passwordUpgradeService,
+			TokenService tokenService,
+			AuthenticationRateLimiter rateLimiter,
+			TokenRevocationService tokenRevocationService) {
 		this.userDetailsService = userDetailsService;
 		this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+		this.verifiedTokenCache = verifiedTokenCache;
+		this.passwordHashingService = passwordHashingService;
+		this.passwordUpgradeService = passwordUpgradeService;
+		this.tokenService = tokenService;
+		this.rateLimiter = rateLimiter;
+		this.tokenRevocationService = tokenRevocationService;
 	}
     
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SecurityConstants.SIGN_UP_URL).permitAll()
+                .antMatchers(HttpMethod.POST, SecurityConstants.REFRESH_URL).permitAll()
+                .antMatchers(SecurityConstants.ADMIN_URLS).hasRole(SecurityConstants.ADMIN_ROLE)
                 .anyRequest().authenticated()
                 .and()
-                .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-                .addFilter(new JWTAuthenticationVerficationFilter(authenticationManager()))
+                .addFilterBefore(new AuthenticationRateLimitFilter(rateLimiter), UsernamePasswordAuthenticationFilter.class)
+                .addFilter(new JWTAuthenticationFilter(authenticationManager(), passwordHashingService, passwordUpgradeService, tokenService, rateLimiter))
+                .addFilter(new JWTAuthenticationVerficationFilter(authenticationManager(), verifiedTokenCache, tokenRevocationService))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
     }
     
@@ -41,6 +65,9 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
     
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+        // the login filter reads the stored hash from the principal to decide on a rehash;
+        // the authentication never outlives the login request
+        auth.eraseCredentials(false);
         auth.parentAuthenticationManager(authenticationManagerBean())
             .userDetailsService(userDetailsService)
             .passwordEncoder(bCryptPasswordEncoder);
@@ -0,0 +1,14 @@
+package com.example.demo.stats;
+
+import java.util.Map;
+
+/**
+ * A component that reports runtime counters (cache hits, queue depths, latencies ...).
+ * All beans implementing this interface are listed by {@code GET /api/admin/stats}.
+ */
+public interface StatsSource {
+
+	String getStatsName();
+
+	Map<String, Number> getStats();
+}
@@ -0,0 +1,49 @@
+package com.example.demo;
+
+import com.example.demo.controllers.AdminController;
+import com.example.demo.order.OrderExporter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class AdminControllerTest {
+    private AdminController adminController;
+
+    private OrderExporter orderExporterMock = mock(OrderExporter.class);
+
+    @Before
+    public void setUp() {
+        adminController = new AdminController();
+        TestUtils.injectObjects(adminController, "orderExporter", orderExporterMock);
+        TestUtils.injectObjects(adminController, "exportTimeoutMillis", 600000L);
+    }
+
+    @Test
+    public void testExportStreamsOrdersWithItsOwnTimeout() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<StreamingResponseBody> responseEntity = adminController.exportOrders(request, response);
+        WebAsyncUtils.getAsyncManager(request).startCallableProcessing(() -> null);
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals("application/x-ndjson", responseEntity.getHeaders().getContentType().toString());
+        Assertions.assertEquals(600000L, request.getAsyncContext().getTimeout());
+
+        responseEntity.getBody().writeTo(new ByteArrayOutputStream());
+        verify(orderExporterMock).export(any(OutputStream.class));
+    }
+}
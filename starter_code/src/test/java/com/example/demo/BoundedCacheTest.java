@@ -0,0 +1,49 @@
+package com.example.demo;
+
+import com.example.demo.cache.BoundedCache;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testGetReturnsCachedValue() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+        cache.put("key", "value");
+
+        Assertions.assertEquals("value", cache.get("key"));
+        Assertions.assertNull(cache.get("other"));
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testExpiredEntryIsNotReturned() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+        cache.put("key", "value", System.currentTimeMillis() - 1);
+
+        Assertions.assertNull(cache.get("key"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(2, 60_000);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.get(1);
+        cache.put(3, "three");
+
+        Assertions.assertEquals("one", cache.get(1));
+        Assertions.assertNull(cache.get(2));
+        Assertions.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLoaderIsUsedOnMiss() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(10, 60_000);
+
+        Assertions.assertEquals("1", cache.get(1, String::valueOf));
+        Assertions.assertEquals("1", cache.get(1, key -> "reloaded"));
+    }
+}
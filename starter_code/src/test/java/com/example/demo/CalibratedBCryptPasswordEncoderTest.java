@@ -0,0 +1,27 @@
+package com.example.demo;
+
+import com.example.demo.security.CalibratedBCryptPasswordEncoder;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+public class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    public void testStrengthOfReadsCostFromHash() {
+        String hash = new CalibratedBCryptPasswordEncoder(5).encode("P@ssw0rd");
+
+        Assertions.assertEquals(5, CalibratedBCryptPasswordEncoder.strengthOf(hash));
+    }
+
+    @Test
+    public void testStrengthOfRejectsNonBCryptValues() {
+        Assertions.assertEquals(-1, CalibratedBCryptPasswordEncoder.strengthOf(null));
+        Assertions.assertEquals(-1, CalibratedBCryptPasswordEncoder.strengthOf("P@ssw0rd"));
+    }
+
+    @Test
+    public void testCalibrateStaysWithinBounds() {
+        Assertions.assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(0, 4, 6).getStrength());
+        Assertions.assertEquals(5, CalibratedBCryptPasswordEncoder.calibrate(60_000, 4, 5).getStrength());
+    }
+}
@@ -1,20 +1,38 @@
 package com.example.demo;
 
+import com.example.demo.cart.WriteBehindCartStore;
 import com.example.demo.controllers.CartController;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchCartRequest;
+import com.example.demo.model.requests.CartOperation;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.model.responses.LineItemResponse;
+import com.example.demo.security.TokenPrincipal;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CartControllerTest {
@@ -26,6 +44,8 @@ public class CartControllerTest {
 
     private ItemRepository itemRepositoryMock = mock(ItemRepository.class);
 
+    private WriteBehindCartStore cartStoreMock = mock(WriteBehindCartStore.class);
+
 
     @Before
     public void setUp() {
@@ -33,6 +53,12 @@ public class CartControllerTest {
         TestUtils.injectObjects(cartController, "userRepository", userRepositoryMock);
         TestUtils.injectObjects(cartController, "cartRepository", cartRepositoryMock);
         TestUtils.injectObjects(cartController, "itemRepository", itemRepositoryMock);
+        TestUtils.injectObjects(cartController, "cartStore", cartStoreMock);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -46,13 +72,217 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername(mockUser.getUsername());
 
-        ResponseEntity<Cart> responseEntity = cartController.addTocart(modifyCartRequest);
-        Cart cartResponse = responseEntity.getBody();
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
+        CartResponse cartResponse = responseEntity.getBody();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
         Assertions.assertNotNull(cartResponse);
-        Assertions.assertEquals("Description", cartResponse.getItems().get(0).getDescription());
+        Assertions.assertEquals("ItemName", cartResponse.getLines().get(0).getName());
+    }
+
+    @Test
+    public void testGetCartReadsProjectedLines() {
+        when(userRepositoryMock.findCartIdByUsername("UserName")).thenReturn(7L);
+        when(cartRepositoryMock.findLinesByCartId(7L)).thenReturn(Arrays.asList(
+                new LineItemResponse(1L, "ItemName", Money.of(BigDecimal.valueOf(10)), 2),
+                new LineItemResponse(2L, "Other", Money.of(BigDecimal.valueOf(1.5)), 1)));
+
+        ResponseEntity<CartResponse> responseEntity = cartController.getCart("UserName");
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(3, responseEntity.getBody().getItemCount());
+        Assertions.assertEquals(new BigDecimal("21.50"), responseEntity.getBody().getTotal());
+        verify(userRepositoryMock, never()).findByUsername(anyString());
+    }
+
+    @Test
+    public void testGetCartFailWhenUserNotFound() {
+        when(userRepositoryMock.findCartIdByUsername("")).thenReturn(null);
+
+        ResponseEntity<CartResponse> responseEntity = cartController.getCart("");
+
+        Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
+    }
+
+    @Test
+    public void testAddManyUnitsKeepsOneLine() {
+        User mockUser = createUser();
+        Item mockItem = createItem();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername(mockUser.getUsername());
+        modifyCartRequest.setQuantity(500);
+
+        CartResponse cartResponse = cartController.addTocart(modifyCartRequest, null).getBody();
+
+        Assertions.assertEquals(1, cartResponse.getLines().size());
+        Assertions.assertEquals(500, cartResponse.getLines().iterator().next().getQuantity());
+        Assertions.assertEquals(500, cartResponse.getItemCount());
+        Assertions.assertEquals(0, BigDecimal.valueOf(5000).compareTo(cartResponse.getTotal()));
+    }
+
+    @Test
+    public void testRemoveMoreUnitsThanInCartDropsLine() {
+        User mockUser = createUser();
+        Item mockItem = createItem();
+        mockUser.getCart().addItem(mockItem, 2);
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername(mockUser.getUsername());
+        modifyCartRequest.setQuantity(5);
+
+        CartResponse cartResponse = cartController.removeFromcart(modifyCartRequest, null).getBody();
+
+        Assertions.assertTrue(cartResponse.getLines().isEmpty());
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(cartResponse.getTotal()));
+    }
+
+    @Test
+    public void testAddItemToCartRetriesOnVersionConflict() {
+        User mockUser = createUser();
+        User reloadedUser = createUser();
+        Item mockItem = createItem();
+
+        // the retry reads the committed cart again, not the instance the failed attempt changed
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser, reloadedUser);
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+        when(cartRepositoryMock.save(any(Cart.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Cart.class, 1L))
+                .thenReturn(reloadedUser.getCart());
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername(mockUser.getUsername());
+        modifyCartRequest.setQuantity(2);
+
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1, responseEntity.getBody().getLines().size());
+        Assertions.assertEquals(2, responseEntity.getBody().getLines().get(0).getQuantity());
+        Assertions.assertEquals(2, reloadedUser.getCart().getLines().iterator().next().getQuantity());
+        Assertions.assertEquals(1L, cartController.getStats().get("retries"));
+        verify(cartRepositoryMock, times(2)).save(any(Cart.class));
+    }
+
+    @Test
+    public void testAddItemToCartGivesUpAfterRepeatedConflicts() {
+        User mockUser = createUser();
+        Item mockItem = createItem();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+        when(cartRepositoryMock.save(any(Cart.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Cart.class, 1L));
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername(mockUser.getUsername());
+
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
+
+        Assertions.assertEquals(409, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1L, cartController.getStats().get("exhausted"));
+    }
+
+    @Test
+    public void testAddItemToCartFailsWhenIfMatchIsStale() {
+        User mockUser = createUser();
+        Item mockItem = createItem();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername(mockUser.getUsername());
+
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, "\"5\"");
+
+        Assertions.assertEquals(412, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals("\"0\"", responseEntity.getHeaders().getETag());
+        verify(cartRepositoryMock, never()).save(any(Cart.class));
+    }
+
+    @Test
+    public void testBatchAppliesAllOperationsWithOneSave() {
+        User mockUser = createUser();
+        Item first = createItem();
+        Item second = createItem();
+        second.setId(2L);
+        second.setPrice(BigDecimal.valueOf(2.00));
+        mockUser.getCart().addItem(second, 4);
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+        BatchCartRequest batchCartRequest = new BatchCartRequest();
+        batchCartRequest.setUsername(mockUser.getUsername());
+        batchCartRequest.setOperations(Arrays.asList(
+                createOperation(CartOperation.Type.ADD, 1L, 3),
+                createOperation(CartOperation.Type.REMOVE, 1L, 1),
+                createOperation(CartOperation.Type.SET, 2L, 1)));
+
+        ResponseEntity<CartResponse> responseEntity = cartController.batch(batchCartRequest, null);
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(3, responseEntity.getBody().getItemCount());
+        Assertions.assertEquals(0, BigDecimal.valueOf(22).compareTo(responseEntity.getBody().getTotal()));
+        verify(itemRepositoryMock, times(1)).findAllById(any());
+        verify(cartRepositoryMock, times(1)).save(any(Cart.class));
+    }
+
+    @Test
+    public void testBatchFailsWhenItemNotFound() {
+        User mockUser = createUser();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(itemRepositoryMock.findAllById(any())).thenReturn(Collections.emptyList());
+
+        BatchCartRequest batchCartRequest = new BatchCartRequest();
+        batchCartRequest.setUsername(mockUser.getUsername());
+        batchCartRequest.setOperations(Collections.singletonList(createOperation(CartOperation.Type.ADD, 1L, 1)));
+
+        ResponseEntity<CartResponse> responseEntity = cartController.batch(batchCartRequest, null);
+
+        Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
+        verify(cartRepositoryMock, never()).save(any(Cart.class));
+    }
+
+    @Test
+    public void testBatchRejectsEmptyOperations() {
+        BatchCartRequest batchCartRequest = new BatchCartRequest();
+        batchCartRequest.setUsername("UserName");
+        batchCartRequest.setOperations(Collections.emptyList());
+
+        ResponseEntity<CartResponse> responseEntity = cartController.batch(batchCartRequest, null);
+
+        Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
+    }
+
+    @Test
+    public void testAddItemToCartUsesCartIdFromToken() {
+        Cart mockCart = new Cart();
+        mockCart.setId(7L);
+        Item mockItem = createItem();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new TokenPrincipal("UserName", 1L, 7L), null, Collections.emptyList()));
+
+        when(cartRepositoryMock.findById(7L)).thenReturn(Optional.of(mockCart));
+        when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
+
+        ModifyCartRequest modifyCartRequest = createModifyCartRequest();
+        modifyCartRequest.setUsername("UserName");
+
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1, responseEntity.getBody().getItemCount());
+        verify(userRepositoryMock, never()).findByUsername(anyString());
     }
 
     @Test
@@ -65,7 +295,7 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername("");
 
-        ResponseEntity<Cart> responseEntity = cartController.addTocart(modifyCartRequest);
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -81,7 +311,7 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername(mockUser.getUsername());
 
-        ResponseEntity<Cart> responseEntity = cartController.addTocart(modifyCartRequest);
+        ResponseEntity<CartResponse> responseEntity = cartController.addTocart(modifyCartRequest, null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -98,8 +328,8 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername(mockUser.getUsername());
 
-        cartController.addTocart(modifyCartRequest);
-        ResponseEntity<Cart> responseEntity = cartController.removeFromcart(modifyCartRequest);
+        cartController.addTocart(modifyCartRequest, null);
+        ResponseEntity<CartResponse> responseEntity = cartController.removeFromcart(modifyCartRequest, null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
@@ -115,7 +345,7 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername("");
 
-        ResponseEntity<Cart> responseEntity = cartController.removeFromcart(modifyCartRequest);
+        ResponseEntity<CartResponse> responseEntity = cartController.removeFromcart(modifyCartRequest, null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -131,7 +361,7 @@ public class CartControllerTest {
         ModifyCartRequest modifyCartRequest = createModifyCartRequest();
         modifyCartRequest.setUsername(mockUser.getUsername());
 
-        ResponseEntity<Cart> responseEntity = cartController.removeFromcart(modifyCartRequest);
+        ResponseEntity<CartResponse> responseEntity = cartController.removeFromcart(modifyCartRequest, null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -155,6 +385,14 @@ public class CartControllerTest {
         return item;
     }
 
+    private CartOperation createOperation(CartOperation.Type type, long itemId, int quantity) {
+        CartOperation operation = new CartOperation();
+        operation.setOp(type);
+        operation.setItemId(itemId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
     private ModifyCartRequest createModifyCartRequest() {
         ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
         modifyCartRequest.setItemId(1);
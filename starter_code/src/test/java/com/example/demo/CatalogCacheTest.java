@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Optional;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CatalogCacheTest {
+    private ItemRepository itemRepositoryMock = mock(ItemRepository.class);
+
+    private CatalogVersion catalogVersion = new CatalogVersion();
+
+    private CatalogCache catalogCache;
+
+    @Before
+    public void setUp() {
+        catalogCache = new CatalogCache(itemRepositoryMock, catalogVersion, new ObjectMapper(), 100, 100, 60000);
+    }
+
+    @Test
+    public void testRepeatedLookupsAreServedFromMemory() {
+        when(itemRepositoryMock.findById(1L)).thenReturn(Optional.of(createItem()));
+
+        catalogCache.findById(1L);
+        Optional<Item> item = catalogCache.findById(1L);
+
+        Assertions.assertEquals("ItemName", item.get().getName());
+        verify(itemRepositoryMock, times(1)).findById(1L);
+        Assertions.assertEquals(1L, catalogCache.getStats().get("hits").longValue());
+    }
+
+    @Test
+    public void testVersionBumpReloads() {
+        when(itemRepositoryMock.findByName("ItemName")).thenReturn(Collections.singletonList(createItem()));
+
+        catalogCache.findByName("ItemName");
+        catalogVersion.bump();
+        catalogCache.findByName("ItemName");
+
+        verify(itemRepositoryMock, times(2)).findByName("ItemName");
+        Assertions.assertEquals(1L, catalogCache.getStats().get("stale").longValue());
+    }
+
+    @Test
+    public void testUnknownIdIsCached() {
+        when(itemRepositoryMock.findById(9L)).thenReturn(Optional.empty());
+
+        Assertions.assertFalse(catalogCache.findById(9L).isPresent());
+        Assertions.assertFalse(catalogCache.findById(9L).isPresent());
+
+        verify(itemRepositoryMock, times(1)).findById(9L);
+    }
+
+    private Item createItem() {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("ItemName");
+        item.setPrice(BigDecimal.valueOf(10.00));
+        item.setDescription("Description");
+        return item;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo;
+
+import com.example.demo.order.IdempotencyStore;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdempotencyStoreTest {
+
+    @Test
+    public void testConcurrentDuplicateWaitsForInFlightExecution() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, 60000, 5000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<IdempotencyStore.Outcome<String>> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.execute("user\nkey", () -> {
+                    executions.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "order-1";
+                });
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<IdempotencyStore.Outcome<String>> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.execute("user\nkey", () -> "order-2");
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        release.countDown();
+
+        Assertions.assertEquals("order-1", first.get(5, TimeUnit.SECONDS).getValue());
+        Assertions.assertEquals("order-1", second.get(5, TimeUnit.SECONDS).getValue());
+        Assertions.assertTrue(second.get().isReplayed());
+        Assertions.assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testFailedExecutionIsNotRemembered() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, 60000, 1000);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> store.execute("user\nkey", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        IdempotencyStore.Outcome<String> retry = store.execute("user\nkey", () -> "order");
+
+        Assertions.assertEquals("order", retry.getValue());
+        Assertions.assertFalse(retry.isReplayed());
+    }
+
+    @Test
+    public void testSlowInFlightExecutionTimesOut() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, 60000, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture.runAsync(() -> {
+            try {
+                store.execute("user\nkey", () -> {
+                    await(release);
+                    return "order";
+                });
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (store.getStats().get("executed").longValue() == 0) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertThrows(TimeoutException.class, () -> store.execute("user\nkey", () -> "duplicate"));
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
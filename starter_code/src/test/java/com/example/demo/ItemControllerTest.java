@@ -1,17 +1,37 @@
 package com.example.demo;
 
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ItemSearchIndex;
 import com.example.demo.controllers.ItemController;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -20,10 +40,17 @@ public class ItemControllerTest {
 
     private ItemRepository itemRepositoryMock = mock(ItemRepository.class);
 
+    private CatalogVersion catalogVersion = new CatalogVersion();
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @Before
     public void setUp() {
         itemController = new ItemController();
-        TestUtils.injectObjects(itemController, "itemRepository", itemRepositoryMock);
+        TestUtils.injectObjects(itemController, "catalogCache",
+                new CatalogCache(itemRepositoryMock, catalogVersion, objectMapper, 100, 100, 60000));
+        TestUtils.injectObjects(itemController, "catalogVersion", catalogVersion);
+        TestUtils.injectObjects(itemController, "searchIndex", new ItemSearchIndex(itemRepositoryMock));
     }
 
     @Test
@@ -32,13 +59,81 @@ public class ItemControllerTest {
         List<Item> itemList = new ArrayList<>();
         itemList.add(mockItem);
 
-        when(itemRepositoryMock.findAll()).thenReturn(itemList);
+        when(itemRepositoryMock.findAllBy(any(Pageable.class))).thenReturn(itemList);
 
-        ResponseEntity<List<Item>> responseEntity = itemController.getItems();
+        ResponseEntity<byte[]> responseEntity = itemController.getItems(null, null, "id", "asc", null, webRequest());
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
-        Assertions.assertEquals("ItemName", responseEntity.getBody().get(0).getName());
+        Assertions.assertEquals("ItemName", items(responseEntity.getBody()).get(0).getName());
+        Assertions.assertNull(responseEntity.getHeaders().getFirst("X-Next-Cursor"));
+        Assertions.assertEquals("no-cache, private", responseEntity.getHeaders().getCacheControl());
+    }
+
+    @Test
+    public void testGetItemsByNameContinuesFromCursor() {
+        List<Item> itemList = createItemList();
+
+        when(itemRepositoryMock.findAllBy(PageRequest.of(0, 2,
+                Sort.by(Sort.Direction.ASC, "name").and(Sort.by(Sort.Direction.ASC, "id"))))).thenReturn(itemList);
+
+        ResponseEntity<byte[]> first = itemController.getItems(null, 1, "name", "asc", null, webRequest());
+
+        Assertions.assertEquals(1, items(first.getBody()).size());
+        String cursor = first.getHeaders().getFirst("X-Next-Cursor");
+        Assertions.assertNotNull(cursor);
+
+        when(itemRepositoryMock.findAfterName(eq("ItemName"), eq(1L), any(Pageable.class)))
+                .thenReturn(itemList.subList(1, 2));
+
+        ResponseEntity<byte[]> second = itemController.getItems(null, 1, "name", "asc", cursor, webRequest());
+
+        Assertions.assertEquals(2L, items(second.getBody()).get(0).getId().longValue());
+        Assertions.assertNull(second.getHeaders().getFirst("X-Next-Cursor"));
+    }
+
+    @Test
+    public void testGetItemsServesPreEncodedGzipWhenAccepted() throws IOException {
+        when(itemRepositoryMock.findAllBy(any(Pageable.class))).thenReturn(createItemList());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+
+        ResponseEntity<byte[]> gzipped = itemController.getItems(null, null, "id", "asc", null,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+        ResponseEntity<byte[]> plain = itemController.getItems(null, null, "id", "asc", null, webRequest());
+
+        Assertions.assertEquals("gzip", gzipped.getHeaders().getFirst("Content-Encoding"));
+        Assertions.assertArrayEquals(plain.getBody(),
+                StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))));
+        Assertions.assertEquals(2, items(plain.getBody()).size());
+        // encoded once, served twice
+        verify(itemRepositoryMock).findAllBy(any(Pageable.class));
+    }
+
+    @Test
+    public void testGetItemsCapsPageSize() {
+        itemController.getItems(0, 10000, "price", "desc", null, webRequest());
+
+        verify(itemRepositoryMock).findAllBy(PageRequest.of(0, 200,
+                Sort.by(Sort.Direction.DESC, "price").and(Sort.by(Sort.Direction.DESC, "id"))));
+    }
+
+    @Test
+    public void testGetItemsRejectsUnknownSortAndBadCursor() {
+        Assertions.assertEquals(400, itemController.getItems(null, null, "colour", "asc", null, webRequest()).getStatusCodeValue());
+        Assertions.assertEquals(400, itemController.getItems(null, null, "price", "asc", "!!", webRequest()).getStatusCodeValue());
+        Assertions.assertEquals(400, itemController.getItems(1, null, "id", "asc", "MTo", webRequest()).getStatusCodeValue());
+    }
+
+    @Test
+    public void testSearchItems() {
+        when(itemRepositoryMock.findAll()).thenReturn(createItemList());
+
+        ResponseEntity<List<Item>> responseEntity = itemController.searchItems("item", 1);
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1, responseEntity.getBody().size());
+        Assertions.assertEquals(400, itemController.searchItems(" ", null).getStatusCodeValue());
     }
 
     @Test
@@ -47,18 +142,49 @@ public class ItemControllerTest {
 
         when(itemRepositoryMock.findById(mockItem.getId())).thenReturn(Optional.of(mockItem));
 
-        ResponseEntity<Item> responseEntity = itemController.getItemById(mockItem.getId());
+        ResponseEntity<Item> responseEntity = itemController.getItemById(mockItem.getId(), webRequest());
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
         Assertions.assertEquals(10, responseEntity.getBody().getPrice().intValue());
+        Assertions.assertEquals("no-cache, private", responseEntity.getHeaders().getCacheControl());
+    }
+
+    @Test
+    public void testMatchingETagShortCircuitsToNotModified() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item/1");
+        request.addHeader("If-None-Match", catalogVersion.eTag());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<Item> responseEntity = itemController.getItemById(1L, new ServletWebRequest(request, response));
+
+        Assertions.assertNull(responseEntity);
+        Assertions.assertEquals(304, response.getStatus());
+        verify(itemRepositoryMock, never()).findById(1L);
+    }
+
+    @Test
+    public void testStaleETagGetsFreshResponseWithNewTag() {
+        Item mockItem = createItem();
+        when(itemRepositoryMock.findById(1L)).thenReturn(Optional.of(mockItem));
+        String staleTag = catalogVersion.eTag();
+        catalogVersion.bump();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item/1");
+        request.addHeader("If-None-Match", staleTag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<Item> responseEntity = itemController.getItemById(1L, new ServletWebRequest(request, response));
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(catalogVersion.eTag(), response.getHeader("ETag"));
+        Assertions.assertNotNull(response.getHeader("Last-Modified"));
     }
 
     @Test
     public void testGetItemByIdFail() {
         when(itemRepositoryMock.findById(1L)).thenReturn(Optional.empty());
 
-        ResponseEntity<Item> responseEntity = itemController.getItemById(1L);
+        ResponseEntity<Item> responseEntity = itemController.getItemById(1L, webRequest());
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -70,11 +196,12 @@ public class ItemControllerTest {
 
         when(itemRepositoryMock.findByName("ItemName")).thenReturn(itemList);
 
-        ResponseEntity<List<Item>> responseEntity = itemController.getItemsByName("ItemName");
+        ResponseEntity<List<Item>> responseEntity = itemController.getItemsByName("ItemName", webRequest());
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
         Assertions.assertEquals(2, responseEntity.getBody().size());
+        Assertions.assertEquals("no-cache, private", responseEntity.getHeaders().getCacheControl());
     }
 
     @Test
@@ -83,12 +210,40 @@ public class ItemControllerTest {
 
         when(itemRepositoryMock.findByName("ItemName")).thenReturn(itemList);
 
-        ResponseEntity<List<Item>> responseEntity = itemController.getItemsByName("ItemName");
+        ResponseEntity<List<Item>> responseEntity = itemController.getItemsByName("ItemName", webRequest());
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
     }
 
+    private List<Item> items(byte[] json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<Item>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void testWriteWithinTheSameSecondDefeatsIfModifiedSince() {
+        when(itemRepositoryMock.findById(1L)).thenReturn(Optional.of(createItem()));
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        itemController.getItemById(1L, new ServletWebRequest(new MockHttpServletRequest("GET", "/api/item/1"), firstResponse));
+        catalogVersion.bump();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item/1");
+        request.addHeader("If-Modified-Since", firstResponse.getHeader("Last-Modified"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<Item> responseEntity = itemController.getItemById(1L, new ServletWebRequest(request, response));
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(0L, catalogVersion.lastModifiedMillis() % 1000);
+    }
+
+    private ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/item"), new MockHttpServletResponse());
+    }
+
     private Item createItem() {
         Item item = new Item();
         item.setId(1L);
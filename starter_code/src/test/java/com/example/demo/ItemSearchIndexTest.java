@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import com.example.demo.catalog.ItemSearchIndex;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemSearchIndexTest {
+    private ItemRepository itemRepositoryMock = mock(ItemRepository.class);
+
+    private ItemSearchIndex searchIndex;
+
+    @Before
+    public void setUp() {
+        when(itemRepositoryMock.findAll()).thenReturn(Arrays.asList(
+                createItem(1L, "Round Widget", "A widget that is round"),
+                createItem(2L, "Square Widget", "A widget that is square"),
+                createItem(3L, "Gadget", "Works with any widgetry")));
+        searchIndex = new ItemSearchIndex(itemRepositoryMock);
+    }
+
+    @Test
+    public void testAllTokensMustMatch() {
+        List<Item> results = searchIndex.search("round WIDGET", 10);
+
+        Assertions.assertEquals(1, results.size());
+        Assertions.assertEquals(1L, results.get(0).getId().longValue());
+    }
+
+    @Test
+    public void testExactNameMatchesRankAbovePrefixMatches() {
+        List<Item> results = searchIndex.search("widget", 10);
+
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals(3L, results.get(2).getId().longValue());
+    }
+
+    @Test
+    public void testPrefixAndInfixMatching() {
+        Assertions.assertEquals(2L, searchIndex.search("squ", 10).get(0).getId().longValue());
+        Assertions.assertEquals(1L, searchIndex.search("ound", 10).get(0).getId().longValue());
+        Assertions.assertTrue(searchIndex.search("xyz", 10).isEmpty());
+    }
+
+    @Test
+    public void testTopKLimitsResults() {
+        Assertions.assertEquals(2, searchIndex.search("widget", 2).size());
+    }
+
+    @Test
+    public void testIndexUpdatesIncrementally() {
+        searchIndex.search("widget", 10);
+
+        searchIndex.index(createItem(1L, "Oval Thing", "Nothing round"));
+        searchIndex.remove(2L);
+
+        Assertions.assertEquals(3L, searchIndex.search("widget", 10).get(0).getId().longValue());
+        Assertions.assertEquals(1, searchIndex.search("widget", 10).size());
+        Assertions.assertEquals("Oval Thing", searchIndex.search("oval", 10).get(0).getName());
+    }
+
+    private Item createItem(Long id, String name, String description) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(BigDecimal.valueOf(10.00));
+        item.setDescription(description);
+        return item;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.MoneyConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.math.BigDecimal;
+
+public class MoneyTest {
+
+    @Test
+    public void testArithmeticInMinorUnits() {
+        Money price = Money.of(new BigDecimal("2.99"));
+
+        Assertions.assertEquals(299, price.getMinorUnits());
+        Assertions.assertEquals(new BigDecimal("1495.00"), price.times(500).toBigDecimal());
+        Assertions.assertEquals(Money.ZERO, price.plus(price).minus(price.times(2)));
+    }
+
+    @Test
+    public void testRoundsHalfEvenToCents() {
+        Assertions.assertEquals(12, Money.of(new BigDecimal("0.125")).getMinorUnits());
+        Assertions.assertEquals(14, Money.of(new BigDecimal("0.135")).getMinorUnits());
+    }
+
+    @Test
+    public void testOverflowFails() {
+        Money large = Money.ofMinorUnits(Long.MAX_VALUE / 2 + 1);
+
+        Assertions.assertThrows(ArithmeticException.class, () -> large.times(2));
+    }
+
+    @Test
+    public void testColumnAndJsonUseDecimal() throws Exception {
+        MoneyConverter converter = new MoneyConverter();
+        Money price = Money.of(new BigDecimal("10.5"));
+
+        Assertions.assertEquals(new BigDecimal("10.50"), converter.convertToDatabaseColumn(price));
+        Assertions.assertEquals(price, converter.convertToEntityAttribute(new BigDecimal("10.50")));
+        Assertions.assertEquals("10.50", new ObjectMapper().writeValueAsString(price));
+        Assertions.assertEquals(price, new ObjectMapper().readValue("10.5", Money.class));
+    }
+}
@@ -1,21 +1,46 @@
 package com.example.demo;
 
+import com.example.demo.cart.WriteBehindCartStore;
 import com.example.demo.controllers.OrderController;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.UserOrderSummary;
 import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserOrderSummaryRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.model.responses.OrderStatusResponse;
+import com.example.demo.model.responses.UserOrderSummaryResponse;
+import com.example.demo.order.IdempotencyStore;
+import com.example.demo.order.OrderIngestionQueue;
+import com.example.demo.order.OrderSummaryService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OrderControllerTest {
@@ -25,12 +50,26 @@ public class OrderControllerTest {
 
     private OrderRepository orderRepositoryMock = mock(OrderRepository.class);
 
+    private WriteBehindCartStore cartStoreMock = mock(WriteBehindCartStore.class);
+
+    private OrderIngestionQueue orderQueueMock = mock(OrderIngestionQueue.class);
+
+    private JdbcTemplate jdbcTemplateMock = mock(JdbcTemplate.class);
+
+    private UserOrderSummaryRepository userOrderSummaryRepositoryMock = mock(UserOrderSummaryRepository.class);
+
 
     @Before
     public void setUp() {
         orderController = new OrderController();
         TestUtils.injectObjects(orderController, "userRepository", userRepositoryMock);
         TestUtils.injectObjects(orderController, "orderRepository", orderRepositoryMock);
+        TestUtils.injectObjects(orderController, "cartStore", cartStoreMock);
+        TestUtils.injectObjects(orderController, "idempotencyStore", new IdempotencyStore(100, 60000, 1000));
+        TestUtils.injectObjects(orderController, "orderQueue", orderQueueMock);
+        TestUtils.injectObjects(orderController, "orderSummaryService", new OrderSummaryService(
+                orderRepositoryMock, jdbcTemplateMock, mock(PlatformTransactionManager.class), 1000));
+        TestUtils.injectObjects(orderController, "userOrderSummaryRepository", userOrderSummaryRepositoryMock);
     }
 
     @Test
@@ -41,17 +80,142 @@ public class OrderControllerTest {
 
         when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
 
-        ResponseEntity<UserOrder> responseEntity = orderController.submit(mockUser.getUsername());
+        ResponseEntity<OrderResponse> responseEntity = orderController.submit(mockUser.getUsername(), null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1, responseEntity.getBody().getItemCount());
+        Assertions.assertEquals("ItemName", responseEntity.getBody().getLines().get(0).getName());
+    }
+
+    @Test
+    public void testSubmitAddsOrderToUserSummary() {
+        User mockUser = createUser();
+        mockUser.setCart(createCart());
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(jdbcTemplateMock.update(anyString(), any(), any(), any(), any())).thenReturn(1);
+
+        orderController.submit(mockUser.getUsername(), null);
+
+        verify(orderRepositoryMock).save(any(UserOrder.class));
+        verify(jdbcTemplateMock).update(eq("update user_order_summary set order_count = order_count + ?, "
+                + "total_spend = total_spend + ?, last_order_at = greatest(coalesce(last_order_at, 0), ?) "
+                + "where user_id = ?"), eq(1), eq(new BigDecimal("10.00")), anyLong(), eq(1L));
+    }
+
+    @Test
+    public void testGetOrderSummaryReadsSummaryRow() {
+        User mockUser = createUser();
+        UserOrderSummary summary = mock(UserOrderSummary.class);
+        when(summary.getOrderCount()).thenReturn(3L);
+        when(summary.getTotalSpend()).thenReturn(BigDecimal.valueOf(42));
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(userOrderSummaryRepositoryMock.findById(1L)).thenReturn(Optional.of(summary));
+
+        ResponseEntity<UserOrderSummaryResponse> responseEntity = orderController.getOrderSummary(mockUser.getUsername());
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(3L, responseEntity.getBody().getOrderCount());
+        Assertions.assertEquals(BigDecimal.valueOf(42), responseEntity.getBody().getTotalSpend());
+        verify(orderRepositoryMock, never()).findByUser(any(User.class));
+    }
+
+    @Test
+    public void testGetOrderSummaryWithoutOrdersIsEmpty() {
+        User mockUser = createUser();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(userOrderSummaryRepositoryMock.findById(1L)).thenReturn(Optional.empty());
+
+        ResponseEntity<UserOrderSummaryResponse> responseEntity = orderController.getOrderSummary(mockUser.getUsername());
+
+        Assertions.assertEquals(0L, responseEntity.getBody().getOrderCount());
+        Assertions.assertNull(responseEntity.getBody().getLastOrderAt());
+    }
+
+    @Test
+    public void testSubmitWithSameIdempotencyKeyReplaysFirstOrder() {
+        User mockUser = createUser();
+        mockUser.setCart(createCart());
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+
+        ResponseEntity<OrderResponse> first = orderController.submit(mockUser.getUsername(), "key-1");
+        ResponseEntity<OrderResponse> second = orderController.submit(mockUser.getUsername(), "key-1");
+
+        Assertions.assertEquals(200, second.getStatusCodeValue());
+        Assertions.assertSame(first.getBody(), second.getBody());
+        Assertions.assertEquals("true", second.getHeaders().getFirst("Idempotent-Replayed"));
+        verify(orderRepositoryMock, times(1)).save(any(UserOrder.class));
+    }
+
+    @Test
+    public void testOrderLinesKeepPriceAtSubmission() {
+        Item item = createItem();
+        Cart cart = new Cart();
+        cart.addItem(item, 3);
+
+        UserOrder order = UserOrder.createFromCart(cart);
+        item.setPrice(BigDecimal.valueOf(99));
+        item.setName("Renamed");
+
+        Assertions.assertEquals(1, order.getLines().size());
+        Assertions.assertEquals(3, order.getItemCount());
+        Assertions.assertEquals(3, order.getLines().get(0).getQuantity());
+        Assertions.assertEquals("ItemName", order.getLines().get(0).getName());
+        Assertions.assertEquals(0, BigDecimal.TEN.compareTo(order.getLines().get(0).getUnitPrice()));
+        Assertions.assertEquals(0, BigDecimal.valueOf(30).compareTo(order.getTotal()));
+    }
+
+    @Test
+    public void testSubmitInAsyncModeReturnsAcceptedWithReference() {
+        User mockUser = createUser();
+        Cart mockCart = createCart();
+        mockUser.setCart(mockCart);
+        OrderResponse accepted = new OrderResponse(null, "ref-1", BigDecimal.valueOf(10), 1, Collections.emptyList());
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(orderQueueMock.isEnabled()).thenReturn(true);
+        when(orderQueueMock.submit(mockUser.getUsername(), mockCart)).thenReturn(accepted);
+
+        ResponseEntity<OrderResponse> responseEntity = orderController.submit(mockUser.getUsername(), null);
+
+        Assertions.assertEquals(202, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals("/api/order/status/UserName/ref-1", responseEntity.getHeaders().getLocation().toString());
+        verify(orderRepositoryMock, never()).save(any(UserOrder.class));
+    }
+
+    @Test
+    public void testSubmitInAsyncModeRejectsWhenQueueFull() {
+        User mockUser = createUser();
+        mockUser.setCart(createCart());
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(orderQueueMock.isEnabled()).thenReturn(true);
+
+        ResponseEntity<OrderResponse> responseEntity = orderController.submit(mockUser.getUsername(), null);
+
+        Assertions.assertEquals(503, responseEntity.getStatusCodeValue());
+    }
+
+    @Test
+    public void testGetOrderStatusOnlyForOwner() {
+        when(orderQueueMock.status("ref-1"))
+                .thenReturn(new OrderStatusResponse("ref-1", OrderStatusResponse.Status.QUEUED, null));
+        when(orderQueueMock.ownerOf("ref-1")).thenReturn("UserName");
+
+        Assertions.assertEquals(OrderStatusResponse.Status.QUEUED,
+                orderController.getOrderStatus("UserName", "ref-1").getBody().getStatus());
+        Assertions.assertEquals(404, orderController.getOrderStatus("Other", "ref-1").getStatusCodeValue());
     }
 
     @Test
     public void testSubmitFailWhenUserNotFound() {
         when(userRepositoryMock.findByUsername("")).thenReturn(null);
 
-        ResponseEntity<UserOrder> responseEntity = orderController.submit("");
+        ResponseEntity<OrderResponse> responseEntity = orderController.submit("", null);
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(404, responseEntity.getStatusCodeValue());
@@ -64,18 +228,52 @@ public class OrderControllerTest {
 
         when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
         when(orderRepositoryMock.findById(1L)).thenReturn(Optional.of(mockUserOrder));
+        when(orderRepositoryMock.findSummariesAfter(eq(mockUser.getId()), eq(0L), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(
+                        new OrderSummary(mockUserOrder.getId(), Money.of(mockUserOrder.getTotal()), 1)));
 
-        ResponseEntity<List<UserOrder>> responseEntity = orderController.getOrdersForUser(mockUser.getUsername());
+        ResponseEntity<OrderHistoryPage> responseEntity =
+                orderController.getOrdersForUser(mockUser.getUsername(), null, null, "asc");
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(1, responseEntity.getBody().getOrders().size());
+        Assertions.assertEquals(1, responseEntity.getBody().getOrders().get(0).getItemCount());
+        Assertions.assertNull(responseEntity.getBody().getNextCursor());
+    }
+
+    @Test
+    public void testGetOrdersForUserReturnsCursorWhenMoreOrdersFollow() {
+        User mockUser = createUser();
+
+        when(userRepositoryMock.findByUsername(mockUser.getUsername())).thenReturn(mockUser);
+        when(orderRepositoryMock.findSummariesBefore(eq(mockUser.getId()), eq(50L), eq(PageRequest.of(0, 3))))
+                .thenReturn(Arrays.asList(
+                        new OrderSummary(49L, Money.ZERO, 1),
+                        new OrderSummary(45L, Money.ZERO, 1),
+                        new OrderSummary(40L, Money.ZERO, 1)));
+
+        ResponseEntity<OrderHistoryPage> responseEntity =
+                orderController.getOrdersForUser(mockUser.getUsername(), 2, 50L, "desc");
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals(2, responseEntity.getBody().getOrders().size());
+        Assertions.assertEquals(45L, responseEntity.getBody().getNextCursor().longValue());
+    }
+
+    @Test
+    public void testGetOrdersForUserRejectsUnknownDirection() {
+        ResponseEntity<OrderHistoryPage> responseEntity =
+                orderController.getOrdersForUser("UserName", null, null, "sideways");
+
+        Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
     }
 
     @Test
     public void testGetOrdersForUserFailWhenUserNotFound() {
         when(userRepositoryMock.findByUsername("")).thenReturn(null);
 
-        ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser("");
+        ResponseEntity<OrderHistoryPage> response = orderController.getOrdersForUser("", null, null, "asc");
 
         Assertions.assertNotNull(response);
         Assertions.assertEquals(404, response.getStatusCodeValue());
@@ -107,18 +305,17 @@ public class OrderControllerTest {
         cart.setId(1L);
         cart.setTotal(BigDecimal.valueOf(10.00));
         cart.setItems(itemList);
+        User user = new User();
+        user.setId(1);
+        user.setUsername("UserName");
+        cart.setUser(user);
         return cart;
     }
 
     private UserOrder createUserOrder() {
-        List<Item> itemList = new ArrayList<>();
-        itemList.add(createItem());
-
-        UserOrder userOrder = new UserOrder();
+        UserOrder userOrder = UserOrder.createFromCart(createCart());
         userOrder.setId(1L);
-        userOrder.setItems(itemList);
         userOrder.setUser(createUser());
-        userOrder.setTotal(BigDecimal.valueOf(10.00));
         return userOrder;
     }
 }
@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.OrderExportRow;
+import com.example.demo.order.OrderExporter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OrderExporterTest {
+
+    private OrderRepository orderRepositoryMock = mock(OrderRepository.class);
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private OrderExporter orderExporter;
+
+    @Before
+    public void setUp() {
+        orderExporter = new OrderExporter(orderRepositoryMock, objectMapper);
+        TestUtils.injectObjects(orderExporter, "entityManager", mock(EntityManager.class));
+    }
+
+    @Test
+    public void testExportWritesOneOrderPerLineWithItsLines() throws Exception {
+        when(orderRepositoryMock.streamExportRows()).thenReturn(Stream.of(
+                new OrderExportRow(1L, "ref-1", 7L, "UserName", Money.of(BigDecimal.TEN), 3, 1000L),
+                new OrderExportRow(2L, "ref-2", 7L, "UserName", Money.ZERO, 0, 2000L),
+                new OrderExportRow(3L, "ref-3", 8L, "Other", Money.of(BigDecimal.ONE), 1, 3000L)));
+        // stub the line mocks before the repository, Mockito cannot nest stubbings
+        OrderLine firstLine = createLine(1L, 1L, 2);
+        OrderLine secondLine = createLine(1L, 2L, 1);
+        OrderLine thirdLine = createLine(3L, 1L, 1);
+        when(orderRepositoryMock.streamAllLinesOrderedByOrderId()).thenReturn(Stream.of(
+                firstLine, secondLine, thirdLine));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = orderExporter.export(out);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(3L, count);
+        Assertions.assertEquals(3, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        Assertions.assertEquals("ref-1", first.get("reference").asText());
+        Assertions.assertEquals(2, first.get("lines").size());
+        Assertions.assertEquals(0, objectMapper.readTree(lines[1]).get("lines").size());
+        Assertions.assertEquals(1, objectMapper.readTree(lines[2]).get("lines").size());
+    }
+
+    @Test
+    public void testExportWithoutOrdersWritesNothing() throws Exception {
+        when(orderRepositoryMock.streamExportRows()).thenReturn(Stream.empty());
+        when(orderRepositoryMock.streamAllLinesOrderedByOrderId()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Assertions.assertEquals(0L, orderExporter.export(out));
+        Assertions.assertEquals(0, out.size());
+    }
+
+    private OrderLine createLine(Long orderId, Long itemId, int quantity) {
+        OrderLine line = mock(OrderLine.class);
+        when(line.getOrderId()).thenReturn(orderId);
+        when(line.getItemId()).thenReturn(itemId);
+        when(line.getName()).thenReturn("ItemName");
+        when(line.getUnitPriceAmount()).thenReturn(Money.of(BigDecimal.ONE));
+        when(line.getQuantity()).thenReturn(quantity);
+        return line;
+    }
+}
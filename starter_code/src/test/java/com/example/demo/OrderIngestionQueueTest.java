@@ -0,0 +1,89 @@
+package com.example.demo;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderStatusResponse;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.order.OrderIngestionQueue;
+import com.example.demo.order.OrderSummaryService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class OrderIngestionQueueTest {
+    private JdbcTemplate jdbcTemplateMock = mock(JdbcTemplate.class);
+
+    private OrderSummaryService orderSummaryServiceMock = mock(OrderSummaryService.class);
+
+    private OrderIngestionQueue orderQueue;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        orderQueue.stop();
+    }
+
+    @Test
+    public void testQueuedOrdersAreWrittenInBatches() throws InterruptedException {
+        orderQueue = new OrderIngestionQueue(jdbcTemplateMock, mock(PlatformTransactionManager.class),
+                orderSummaryServiceMock, true, 100, 50, 5, 60000);
+        orderQueue.start();
+
+        OrderResponse accepted = null;
+        for (int i = 0; i < 10; i++) {
+            accepted = orderQueue.submit("UserName", createCart());
+        }
+        Assertions.assertNull(accepted.getId());
+        Assertions.assertEquals(2, accepted.getItemCount());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (orderQueue.getStats().get("persisted").longValue() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Assertions.assertEquals(10L, orderQueue.getStats().get("persisted"));
+        Assertions.assertEquals(OrderStatusResponse.Status.PERSISTED, orderQueue.status(accepted.getReference()).getStatus());
+        verify(jdbcTemplateMock, atLeastOnce()).batchUpdate(
+                eq("insert into user_order (reference, total, item_count, user_id, created_at) "
+                        + "values (?, ?, ?, ?, ?)"), anyList());
+        verify(orderSummaryServiceMock, atLeastOnce()).record(eq(1L), anyInt(), any(Money.class), anyLong());
+    }
+
+    @Test
+    public void testFullQueueRejectsOrder() {
+        orderQueue = new OrderIngestionQueue(jdbcTemplateMock, mock(PlatformTransactionManager.class),
+                orderSummaryServiceMock, true, 1, 50, 5, 60000);
+
+        Assertions.assertNotNull(orderQueue.submit("UserName", createCart()));
+        Assertions.assertNull(orderQueue.submit("UserName", createCart()));
+        Assertions.assertEquals(1L, orderQueue.getStats().get("rejected"));
+    }
+
+    private Cart createCart() {
+        User user = new User();
+        user.setId(1);
+        user.setUsername("UserName");
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("ItemName");
+        item.setPrice(BigDecimal.valueOf(2.50));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.addItem(item, 2);
+        return cart;
+    }
+}
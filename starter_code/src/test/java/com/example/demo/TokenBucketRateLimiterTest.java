@@ -0,0 +1,39 @@
+package com.example.demo;
+
+import com.example.demo.security.TokenBucketRateLimiter;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void testBurstIsLimitedToCapacity() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 1, 100);
+
+        Assertions.assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1") > 0);
+        Assertions.assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testKeysHaveIndependentBuckets() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 100);
+
+        Assertions.assertEquals(0, limiter.tryAcquire("alice"));
+        Assertions.assertTrue(limiter.tryAcquire("alice") > 0);
+        Assertions.assertEquals(0, limiter.tryAcquire("bob"));
+    }
+
+    @Test
+    public void testKeysBeyondMaximumAreNotTracked() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 1);
+
+        Assertions.assertEquals(0, limiter.tryAcquire("alice"));
+        Assertions.assertEquals(0, limiter.tryAcquire("bob"));
+        Assertions.assertEquals(0, limiter.tryAcquire("bob"));
+        Assertions.assertEquals(1, limiter.size());
+        Assertions.assertEquals(2, limiter.getUntrackedCount());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo;
+
+import com.auth0.jwt.JWT;
+import com.example.demo.model.persistence.RevokedToken;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+import com.example.demo.security.TokenRevocationService;
+import com.example.demo.security.TokenPrincipal;
+import com.example.demo.security.TokenService;
+import com.example.demo.security.VerifiedTokenCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TokenRevocationServiceTest {
+    private TokenRevocationService tokenRevocationService;
+
+    private RevokedTokenRepository revokedTokenRepositoryMock = mock(RevokedTokenRepository.class);
+
+    private TokenService tokenService = new TokenService(100);
+
+    @Before
+    public void setUp() {
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepositoryMock,
+                new VerifiedTokenCache(100, 60_000, new String[0]), 1000);
+    }
+
+    @Test
+    public void testUnrevokedTokenSkipsStoreLookup() {
+        String jti = JWT.decode(tokenService.createAccessToken(new TokenPrincipal("UserName", 0L, 0L))).getId();
+
+        Assertions.assertFalse(tokenRevocationService.isRevoked(jti));
+        verify(revokedTokenRepositoryMock, never()).existsById(anyString());
+    }
+
+    @Test
+    public void testRevokedTokenIsReported() {
+        String token = tokenService.createAccessToken(new TokenPrincipal("UserName", 0L, 0L));
+        String jti = JWT.decode(token).getId();
+        when(revokedTokenRepositoryMock.existsById(jti)).thenReturn(true);
+
+        Assertions.assertTrue(tokenRevocationService.revoke(token));
+        Assertions.assertTrue(tokenRevocationService.isRevoked(jti));
+        verify(revokedTokenRepositoryMock).save(any(RevokedToken.class));
+    }
+
+    @Test
+    public void testTokenWithoutIdCannotBeRevoked() {
+        Assertions.assertFalse(tokenRevocationService.revoke("not-a-jwt"));
+        Assertions.assertFalse(tokenRevocationService.isRevoked(null));
+    }
+}
@@ -3,9 +3,14 @@ package com.example.demo;
 import com.example.demo.controllers.UserController;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.requests.RefreshTokenRequest;
+import com.example.demo.model.responses.TokenResponse;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.security.TokenPrincipal;
+import com.example.demo.security.TokenService;
+import com.example.demo.security.UserDetailsServiceImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
@@ -15,6 +20,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import java.util.Optional;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class UserControllerTest {
@@ -22,10 +28,14 @@ public class UserControllerTest {
 
     private UserRepository userRepositoryMock = mock(UserRepository.class);
 
-    private CartRepository cartRepositoryMock = mock(CartRepository.class);
-
     private BCryptPasswordEncoder bCryptPasswordEncoderMock = mock(BCryptPasswordEncoder.class);
 
+    private PasswordHashingService passwordHashingService = new PasswordHashingService(bCryptPasswordEncoderMock, 1, 10);
+
+    private UserDetailsServiceImpl userDetailsServiceMock = mock(UserDetailsServiceImpl.class);
+
+    private TokenService tokenService = new TokenService(100);
+
     private static final String USERNAME_IS_EMPTY = "Username can't be empty";
 
     private static final String USERNAME_EXISTS = "Username already exists";
@@ -38,8 +48,9 @@ public class UserControllerTest {
     public void setUp() {
         userController = new UserController();
         TestUtils.injectObjects(userController, "userRepository", userRepositoryMock);
-        TestUtils.injectObjects(userController, "cartRepository", cartRepositoryMock);
-        TestUtils.injectObjects(userController, "bCryptPasswordEncoder", bCryptPasswordEncoderMock);
+        TestUtils.injectObjects(userController, "passwordHashingService", passwordHashingService);
+        TestUtils.injectObjects(userController, "userDetailsService", userDetailsServiceMock);
+        TestUtils.injectObjects(userController, "tokenService", tokenService);
     }
 
     @Test
@@ -84,7 +95,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
         User userResponse = (User) responseEntity.getBody();
 
         Assertions.assertNotNull(responseEntity);
@@ -92,6 +103,22 @@ public class UserControllerTest {
         Assertions.assertEquals("UserName", userResponse.getUsername());
     }
 
+    @Test
+    public void testCreateUserEncodesPasswordAndCreatesCart() {
+        CreateUserRequest mockCreateUserRequest = createUserRequest();
+
+        when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
+        when(bCryptPasswordEncoderMock.encode(mockCreateUserRequest.getPassword())).thenReturn("hashed");
+
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
+        User userResponse = (User) responseEntity.getBody();
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertEquals("hashed", userResponse.getPassword());
+        Assertions.assertNotNull(userResponse.getCart());
+        verify(userDetailsServiceMock).invalidate("UserName");
+    }
+
     @Test
     public void testCreateUserFailWhenUsernameIsEmpty() {
         CreateUserRequest mockCreateUserRequest = createUserRequest();
@@ -99,7 +126,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
@@ -112,7 +139,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(createUser());
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
@@ -126,7 +153,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
@@ -140,7 +167,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
@@ -154,7 +181,7 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
@@ -168,13 +195,37 @@ public class UserControllerTest {
 
         when(userRepositoryMock.findByUsername(mockCreateUserRequest.getUsername())).thenReturn(null);
 
-        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest);
+        ResponseEntity<?> responseEntity = userController.createUser(mockCreateUserRequest).join();
 
         Assertions.assertNotNull(responseEntity);
         Assertions.assertEquals(400, responseEntity.getStatusCodeValue());
         Assertions.assertEquals(CONFIRM_PASSWORD_DO_NOT_MATCH, responseEntity.getBody());
     }
 
+    @Test
+    public void testRefreshTokenRotates() {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken(tokenService.createRefreshToken(new TokenPrincipal("UserName", 0L, 0L)));
+
+        ResponseEntity<TokenResponse> responseEntity = userController.refreshToken(refreshTokenRequest);
+        TokenResponse tokens = responseEntity.getBody();
+
+        Assertions.assertEquals(200, responseEntity.getStatusCodeValue());
+        Assertions.assertNotNull(tokens.getAccessToken());
+        Assertions.assertNotEquals(refreshTokenRequest.getRefreshToken(), tokens.getRefreshToken());
+        Assertions.assertEquals(401, userController.refreshToken(refreshTokenRequest).getStatusCodeValue());
+    }
+
+    @Test
+    public void testRefreshTokenFailWhenUnknown() {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("unknown");
+
+        ResponseEntity<TokenResponse> responseEntity = userController.refreshToken(refreshTokenRequest);
+
+        Assertions.assertEquals(401, responseEntity.getStatusCodeValue());
+    }
+
     private User createUser() {
         User user = new User();
         user.setId(1);
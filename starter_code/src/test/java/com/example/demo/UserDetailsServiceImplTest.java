@@ -0,0 +1,65 @@
+package com.example.demo;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.security.UserDetailsServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserDetailsServiceImplTest {
+    private UserDetailsServiceImpl userDetailsService;
+
+    private UserRepository userRepositoryMock = mock(UserRepository.class);
+
+    @Before
+    public void setUp() {
+        userDetailsService = new UserDetailsServiceImpl(10, 60_000);
+        TestUtils.injectObjects(userDetailsService, "userRepository", userRepositoryMock);
+    }
+
+    @Test
+    public void testRepeatedLoadsAreServedFromCache() {
+        when(userRepositoryMock.findByUsername("UserName")).thenReturn(createUser());
+
+        UserDetails first = userDetailsService.loadUserByUsername("UserName");
+        UserDetails second = userDetailsService.loadUserByUsername("UserName");
+
+        Assertions.assertEquals("hashed", first.getPassword());
+        Assertions.assertSame(first, second);
+        verify(userRepositoryMock, times(1)).findByUsername("UserName");
+    }
+
+    @Test
+    public void testInvalidateForcesReload() {
+        when(userRepositoryMock.findByUsername("UserName")).thenReturn(createUser());
+
+        userDetailsService.loadUserByUsername("UserName");
+        userDetailsService.invalidate("UserName");
+        userDetailsService.loadUserByUsername("UserName");
+
+        verify(userRepositoryMock, times(2)).findByUsername("UserName");
+    }
+
+    @Test(expected = UsernameNotFoundException.class)
+    public void testUnknownUserIsNotFound() {
+        when(userRepositoryMock.findByUsername("")).thenReturn(null);
+
+        userDetailsService.loadUserByUsername("");
+    }
+
+    private User createUser() {
+        User user = new User();
+        user.setId(1);
+        user.setUsername("UserName");
+        user.setPassword("hashed");
+        return user;
+    }
+}
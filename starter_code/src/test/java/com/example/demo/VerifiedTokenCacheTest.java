@@ -0,0 +1,31 @@
+package com.example.demo;
+
+import com.example.demo.security.TokenPrincipal;
+import com.example.demo.security.TokenService;
+import com.example.demo.security.VerifiedTokenCache;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.springframework.security.core.Authentication;
+
+public class VerifiedTokenCacheTest {
+    private VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(100, 60_000, new String[] {"admin"});
+
+    private TokenService tokenService = new TokenService(100);
+
+    @Test
+    public void testConfiguredAdminIsGrantedAdminRole() {
+        String token = tokenService.createAccessToken(new TokenPrincipal("admin", 1L, 1L));
+
+        Authentication authentication = verifiedTokenCache.verify(token).getAuthentication();
+
+        Assertions.assertEquals(1, authentication.getAuthorities().size());
+        Assertions.assertEquals("ROLE_ADMIN", authentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    public void testOtherUsersHaveNoAuthorities() {
+        String token = tokenService.createAccessToken(new TokenPrincipal("UserName", 2L, 2L));
+
+        Assertions.assertTrue(verifiedTokenCache.verify(token).getAuthentication().getAuthorities().isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo;
+
+import com.example.demo.cart.CartUpdate;
+import com.example.demo.cart.WriteBehindCartStore;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBehindCartStoreTest {
+    private WriteBehindCartStore cartStore;
+
+    private CartRepository cartRepositoryMock = mock(CartRepository.class);
+
+    private JdbcTemplate jdbcTemplateMock = mock(JdbcTemplate.class);
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> rows;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        cartStore = new WriteBehindCartStore(cartRepositoryMock, jdbcTemplateMock,
+                mock(PlatformTransactionManager.class), true, 500, 600000);
+        TestUtils.injectObjects(cartStore, "entityManager", mock(EntityManager.class));
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+        when(cartRepositoryMock.findById(1L)).thenReturn(Optional.of(cart));
+    }
+
+    @Test
+    public void testChangesAreCoalescedIntoOneWrite() {
+        Item item = createItem();
+
+        cartStore.modify(1L, null, cart -> cart.addItem(item, 2));
+        CartUpdate update = cartStore.modify(1L, null, cart -> cart.addItem(item, 3));
+
+        Assertions.assertEquals(5, update.getCart().getItemCount());
+        verify(jdbcTemplateMock, never()).batchUpdate(anyString(), anyList());
+
+        cartStore.flush(1L);
+
+        verify(jdbcTemplateMock).batchUpdate(eq("update cart set total = ?, version = ? where id = ?"), rows.capture());
+        Assertions.assertEquals(1, rows.getValue().size());
+        Assertions.assertEquals(2L, rows.getValue().get(0)[1]);
+        verify(cartRepositoryMock, times(1)).findById(1L);
+
+        cartStore.flush(1L);
+        verify(jdbcTemplateMock, times(1))
+                .batchUpdate(eq("update cart set total = ?, version = ? where id = ?"), anyList());
+    }
+
+    @Test
+    public void testStaleIfMatchLeavesCartUntouched() {
+        Item item = createItem();
+
+        CartUpdate update = cartStore.modify(1L, "\"7\"", cart -> cart.addItem(item, 1));
+
+        Assertions.assertTrue(update.isPreconditionFailed());
+        Assertions.assertEquals("\"0\"", update.getETag());
+        Assertions.assertTrue(update.getCart().getLines().isEmpty());
+        Assertions.assertEquals(0L, cartStore.getStats().get("dirtyCarts"));
+    }
+
+    @Test
+    public void testEvictionBetweenLookupAndChangeKeepsFlushing() throws Exception {
+        WriteBehindCartStore evictingStore = new WriteBehindCartStore(cartRepositoryMock, jdbcTemplateMock,
+                mock(PlatformTransactionManager.class), true, 500, 0);
+        TestUtils.injectObjects(evictingStore, "entityManager", mock(EntityManager.class));
+        Item item = createItem();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread flusher = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    evictingStore.flushAll();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        flusher.start();
+        for (int i = 0; i < 20000; i++) {
+            Assertions.assertNotNull(evictingStore.modify(1L, null, cart -> cart.addItem(item, 1)));
+        }
+        done.set(true);
+        flusher.join();
+
+        Assertions.assertNull(failure.get());
+        evictingStore.flushAll();
+        Assertions.assertEquals(0L, evictingStore.getStats().get("dirtyCarts"));
+        Assertions.assertEquals(0L, evictingStore.getStats().get("flushFailures"));
+    }
+
+    @Test
+    public void testUnknownCartReturnsNull() {
+        when(cartRepositoryMock.findById(2L)).thenReturn(Optional.empty());
+
+        Assertions.assertNull(cartStore.modify(2L, null, cart -> { }));
+    }
+
+    private Item createItem() {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("ItemName");
+        item.setPrice(BigDecimal.valueOf(10.00));
+        item.setDescription("Description");
+        return item;
+    }
+}
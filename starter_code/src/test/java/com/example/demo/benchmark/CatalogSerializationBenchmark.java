@@ -0,0 +1,130 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Item;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writing a catalog page to the response: serializing the items through Jackson on every
+ * request, as {@code ItemController.getItems} used to, against copying the bytes
+ * {@code CatalogCache} encoded once per catalog version. Run like {@link MoneyBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CatalogSerializationBenchmark {
+
+	@Param({"20", "200"})
+	private int pageSize;
+
+	private List<Item> items;
+
+	private ObjectWriter writer;
+
+	private byte[] json;
+
+	private byte[] gzip;
+
+	private OutputStream response;
+
+	@Setup
+	public void setUp(Blackhole blackhole) throws IOException {
+		items = new ArrayList<>(pageSize);
+		for (long i = 1; i <= pageSize; i++) {
+			Item item = new Item();
+			item.setId(i);
+			item.setName("Widget " + i);
+			item.setPrice(new BigDecimal("2.99"));
+			item.setDescription("A widget in the catalog, number " + i);
+			items.add(item);
+		}
+		writer = new ObjectMapper().writerFor(new TypeReference<List<Item>>() {});
+		json = writer.writeValueAsBytes(items);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(json);
+		}
+		gzip = compressed.toByteArray();
+		response = new BlackholeOutputStream(blackhole);
+	}
+
+	@Benchmark
+	public void serializePerRequest() throws IOException {
+		writer.writeValue(response, items);
+	}
+
+	@Benchmark
+	public void serializeAndGzipPerRequest() throws IOException {
+		// closing the gzip stream, as writeValue does, writes its trailer
+		writer.writeValue(new GZIPOutputStream(response), items);
+	}
+
+	@Benchmark
+	public void writePreEncoded() throws IOException {
+		response.write(json);
+	}
+
+	@Benchmark
+	public void writePreEncodedGzip() throws IOException {
+		response.write(gzip);
+	}
+
+	/**
+	 * Stands in for the servlet output stream, so only producing the bytes is measured.
+	 */
+	private static final class BlackholeOutputStream extends OutputStream {
+
+		private final Blackhole blackhole;
+
+		private BlackholeOutputStream(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void write(int b) {
+			blackhole.consume(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			blackhole.consume(b);
+			blackhole.consume(len);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(CatalogSerializationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart total arithmetic with {@link BigDecimal}, as {@code Cart.addItem} used to do it
+ * one unit at a time, against {@link Money}. Run with
+ * {@code mvn test-compile exec:java -Dexec.mainClass=com.example.demo.benchmark.MoneyBenchmark -Dexec.classpathScope=test}
+ * or from the IDE; add {@code -prof gc} in the options to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+	@Param({"1", "10", "500"})
+	private int quantity;
+
+	private BigDecimal decimalPrice;
+
+	private Money moneyPrice;
+
+	@Setup
+	public void setUp() {
+		decimalPrice = new BigDecimal("2.99");
+		moneyPrice = Money.of(decimalPrice);
+	}
+
+	@Benchmark
+	public BigDecimal bigDecimalPerUnit() {
+		BigDecimal total = new BigDecimal(0);
+		for (int i = 0; i < quantity; i++) {
+			total = total.add(decimalPrice);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public BigDecimal bigDecimalMultiply() {
+		return new BigDecimal(0).add(decimalPrice.multiply(BigDecimal.valueOf(quantity)));
+	}
+
+	@Benchmark
+	public long moneyMultiply() {
+		return Money.ZERO.plus(moneyPrice.times(quantity)).getMinorUnits();
+	}
+
+	@Benchmark
+	public BigDecimal moneyMultiplyToJson() {
+		return Money.ZERO.plus(moneyPrice.times(quantity)).toBigDecimal();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MoneyBenchmark.class.getSimpleName()).build()).run();
+	}
+}